@@ -0,0 +1,262 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Micro-benchmarks of the model's hot paths: Card.isSet, Game.findSet, Game.testSelected, Board.findAllSets,
+ * Deck.shuffle and Board.compressBoard.
+ * <p>
+ * This is a self-contained harness rather than JMH, since the project has no build to pull JMH and its annotation
+ * processor in. Each benchmark runs warmup iterations, then measured iterations, and prints one row per parameter:
+ * the mean time per operation over the measured iterations, the half-width of its 99.9% Student t confidence
+ * interval, and the bytes allocated per operation, read from the thread's allocation counter. Every deck is dealt
+ * from a fixed seed so runs are comparable.
+ * <p>
+ * Game.findSet reads the Board's set index, so it costs the same at every board size; the cost of keeping the
+ * index up to date shows in Game.testSelected, which takes a set off the board and deals its replacements.
+ * <p>
+ * Usage: {@code java Benchmarks [--compare benchmark-baseline.txt]}
+ */
+public class Benchmarks {
+    private static final long SEED = 42;
+    private static final int[] BOARD_SIZES = {12, 15, 18, 21};
+
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int MEASUREMENT_ITERATIONS = 10;
+    private static final long ITERATION_NANOS = 200_000_000L;
+    private static final double CONFIDENCE = 0.999;
+
+    private static volatile long sink; // consumes benchmark results so the JIT cannot discard them
+
+    /**
+     * One benchmarked operation.
+     */
+    private static abstract class Benchmark {
+        private final String name;
+        private final String param;
+
+        Benchmark(String name, String param) {
+            this.name = name;
+            this.param = param;
+        }
+
+        /**
+         * Prepares the state for a batch of operations. Not timed.
+         * @param batch the number of operations about to be run.
+         */
+        void setup(int batch) {}
+
+        /**
+         * Runs the i-th operation of the current batch.
+         * @param i the position of the operation in the batch.
+         * @return any value derived from the operation's result.
+         */
+        abstract long run(int i);
+    }
+
+    /**
+     * @return every benchmark, one per parameter value.
+     */
+    private static List<Benchmark> benchmarks() {
+        List<Benchmark> benchmarks = new ArrayList<>();
+
+        // region Card.isSet
+        Random random = new Random(SEED);
+        Card[] cards = new Card[3 * 1024];
+        for (int i = 0; i < cards.length; i++) {
+            Deck deck = new Deck(random.nextLong());
+            cards[i] = deck.getTopCard();
+        }
+        benchmarks.add(new Benchmark("Card.isSet", "-") {
+            long run(int i) {
+                int t = 3 * (i & 1023);
+                return Card.isSet(cards[t], cards[t + 1], cards[t + 2]) ? 1 : 0;
+            }
+        });
+        // endregion
+
+        // region Game.findSet
+        Game[] findSetGames = new Game[256];
+        for (int g = 0; g < findSetGames.length; g++)
+            findSetGames[g] = gameWithBoardSize(SEED + g, 12);
+        benchmarks.add(new Benchmark("Game.findSet", "-") {
+            long run(int i) {
+                return findSetGames[i & 255].findSet().length;
+            }
+        });
+        // endregion
+
+        // region Game.testSelected
+        for (int size : BOARD_SIZES) {
+            benchmarks.add(new Benchmark("Game.testSelected", Integer.toString(size)) {
+                private Game[] games;
+
+                // taking a set consumes it, so each batch gets freshly dealt games with a set selected
+                void setup(int batch) {
+                    games = new Game[batch];
+                    long seed = SEED;
+                    for (int b = 0; b < batch; b++) {
+                        BoardSquare[] set;
+                        do {
+                            games[b] = gameWithBoardSize(seed++, size);
+                            set = games[b].findSet();
+                        } while (set.length == 0);
+                        for (BoardSquare bs : set)
+                            games[b].addToSelected(bs.getRowPos(), bs.getColPos());
+                    }
+                }
+
+                long run(int i) {
+                    return games[i].testSelected() ? 1 : 0;
+                }
+            });
+        }
+        // endregion
+
+        // region Board.findAllSets
+        for (int size : BOARD_SIZES) {
+            Board[] boards = new Board[256];
+            for (int b = 0; b < boards.length; b++)
+                boards[b] = gameWithBoardSize(SEED + b, size).getBoard();
+
+            benchmarks.add(new Benchmark("Board.findAllSets", Integer.toString(size)) {
+                long run(int i) {
+                    return boards[i & 255].findAllSets().size();
+                }
+            });
+        }
+        // endregion
+
+        // region Deck.shuffle
+        Deck deck = new Deck(SEED);
+        benchmarks.add(new Benchmark("Deck.shuffle", "81") {
+            long run(int i) {
+                deck.shuffle();
+                return deck.cardsRemaining();
+            }
+        });
+        // endregion
+
+        // region Board.compressBoard
+        for (int size : BOARD_SIZES) {
+            benchmarks.add(new Benchmark("Board.compressBoard", Integer.toString(size)) {
+                private Board[] boards;
+                private ArrayList<ArrayList<BoardSquare>> toRemove;
+
+                // compressing consumes a board, so each batch gets freshly dealt ones
+                void setup(int batch) {
+                    boards = new Board[batch];
+                    toRemove = new ArrayList<>(batch);
+                    for (int b = 0; b < batch; b++) {
+                        Board board = gameWithBoardSize(SEED + b, size).getBoard();
+                        ArrayList<BoardSquare> squares = new ArrayList<>(3);
+                        squares.add(board.getBoardSquare(0, 1));
+                        squares.add(board.getBoardSquare(1, 2));
+                        squares.add(board.getBoardSquare(2, 0));
+                        boards[b] = board;
+                        toRemove.add(squares);
+                    }
+                }
+
+                long run(int i) {
+                    boards[i].compressBoard(toRemove.get(i));
+                    return boards[i].numCols();
+                }
+            });
+        }
+        // endregion
+
+        return benchmarks;
+    }
+
+    /**
+     * Deals a seeded Game, then adds cards until the board has the requested size.
+     * @param seed the seed of the Game's Deck.
+     * @param size the number of cards the board should hold.
+     * @return the Game.
+     */
+    private static Game gameWithBoardSize(long seed, int size) {
+        Game game = new Game(seed);
+        while (game.numCardsOnBoard() < size)
+            game.add3();
+        return game;
+    }
+
+    /**
+     * Runs every benchmark and prints one row per benchmark and parameter.
+     * @param args optionally "--compare" followed by the path of a results file to compare against.
+     * @throws IOException if the baseline file cannot be read.
+     */
+    public static void main(String[] args) throws IOException {
+        Map<String, Double> baseline = new HashMap<>();
+        if (args.length == 2 && args[0].equals("--compare")) {
+            for (String line : Files.readAllLines(Paths.get(args[1]))) {
+                if (line.startsWith("#") || line.trim().isEmpty())
+                    continue;
+                String[] fields = line.trim().split("\\s+");
+                baseline.put(fields[0] + " " + fields[1], Double.parseDouble(fields[2]));
+            }
+        }
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        System.out.println(String.format("# %-22s %6s %12s %10s %12s%s",
+                "benchmark", "param", "ns/op", "error", "B/op", baseline.isEmpty() ? "" : "   vs baseline"));
+
+        for (Benchmark b : benchmarks()) {
+            double[] nanosPerOp = new double[MEASUREMENT_ITERATIONS];
+            long totalOps = 0;
+            long totalBytes = 0;
+
+            for (int iteration = -WARMUP_ITERATIONS; iteration < MEASUREMENT_ITERATIONS; iteration++) {
+                long ops = 0;
+                long nanos = 0;
+                long bytes = 0;
+                int batch = 1024;
+
+                while (nanos < ITERATION_NANOS) {
+                    b.setup(batch);
+                    long acc = 0;
+                    long bytesBefore = threads.getCurrentThreadAllocatedBytes();
+                    long start = System.nanoTime();
+                    for (int i = 0; i < batch; i++)
+                        acc += b.run(i);
+                    nanos += System.nanoTime() - start;
+                    bytes += threads.getCurrentThreadAllocatedBytes() - bytesBefore;
+                    ops += batch;
+                    sink += acc;
+                }
+
+                if (iteration >= 0) {
+                    nanosPerOp[iteration] = (double) nanos / ops;
+                    totalOps += ops;
+                    totalBytes += bytes;
+                }
+            }
+
+            // mean and the half-width of its confidence interval, with n - 1 degrees of freedom
+            double mean = 0;
+            for (double v : nanosPerOp)
+                mean += v;
+            mean /= nanosPerOp.length;
+            double variance = 0;
+            for (double v : nanosPerOp)
+                variance += (v - mean) * (v - mean);
+            double t = StudentT.quantile(1 - (1 - CONFIDENCE) / 2, nanosPerOp.length - 1);
+            double error = t * Math.sqrt(variance / (nanosPerOp.length - 1) / nanosPerOp.length);
+
+            StringBuilder row = new StringBuilder(String.format("  %-22s %6s %12.3f %10.3f %12.1f",
+                    b.name, b.param, mean, error, (double) totalBytes / totalOps));
+            Double before = baseline.get(b.name + " " + b.param);
+            if (before != null)
+                row.append(String.format("   %+.1f%%", (mean - before) / before * 100));
+            System.out.println(row);
+        }
+    }
+}
@@ -1,49 +1,92 @@
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 public class Board {
-    private ArrayList<ArrayList<BoardSquare>> board;
+    public static final int CAPACITY = 21;
+    private static final int ROWS = 3;
+
+    // BoardSquares are stored column by column: slot = col * ROWS + row, so adding a column appends to the end
+    private BoardSquare[] board = new BoardSquare[CAPACITY];
+    private int size;
+
+    // set index, kept up to date whenever a Card enters or leaves the Board
+    private BoardSquare[] squareOf = new BoardSquare[81];   // Card index -> BoardSquare holding it
+    private int[] cardsOnBoard = new int[81];               // indices of the Cards on the Board
+    private int numCardsOnBoard;
+    private int[] sets = new int[16];                       // every set on the Board, packed by packSet()
+    private int numSets;
+    private int version;                                    // bumped whenever a Card enters or leaves the Board
 
     /**
      * Constructor.
      * @param deck the Deck of Cards with which to populate this Board
      */
     public Board(Deck deck) {
-        board = new ArrayList<>(3);
-        for (int row = 0; row < 3; row++) {
-            ArrayList<BoardSquare> thisRow = new ArrayList<>(4);
-            for (int col = 0; col < 4; col++) {
-                BoardSquare tile = new BoardSquare(deck.getTopCard(), row, col);
-                thisRow.add(tile);
-            }
-            board.add(thisRow);
-        }
+        for (int col = 0; col < 4; col++)
+            for (int row = 0; row < ROWS; row++)
+                place(new BoardSquare(deck.getTopCard(), row, col));
+    }
+
+    /**
+     * Copy constructor.
+     * Makes a detached copy of a Board, with its own BoardSquares holding the same Cards in the same slots.
+     * Selections are not copied.
+     * @param other the Board to copy
+     */
+    Board(Board other) {
+        for (int slot = 0; slot < other.size; slot++)
+            place(new BoardSquare(other.board[slot].getCard(), slot % ROWS, slot / ROWS));
+        this.version = other.version;
     }
 
     /**
      * Compresses board by removing specified cards.
+     * <p>
+     * Cards from the end of the Board move into the holes left by the removed cards, so this is a single
+     * in-place pass that only repositions the cards that actually have to move.
+     * A BoardSquare listed more than once, or no longer on the Board, is only removed once, or not at all.
      * @param cardsToRemove an ArrayList of BoardSquares to remove from the Board.
      */
     public void compressBoard(ArrayList<BoardSquare> cardsToRemove) {
-        ArrayList<BoardSquare> tempArray = new ArrayList<>();
-        for (ArrayList<BoardSquare> row : board)
-            tempArray.addAll(row);
-        board.clear();
-
-        tempArray.removeAll(cardsToRemove);
-
-        int numCols = tempArray.size() / 3;
-        for (int row = 0; row < 3; row++) {
-            ArrayList<BoardSquare> thisRow = new ArrayList<>(1);
-            for (int col = 0; col < numCols; col++) {
-                BoardSquare tile = tempArray.remove(0);
-
-                // update BoardSquare with new row and column positions
-                tile.setRowPos(row);
-                tile.setColPos(col);
-                thisRow.add(tile);
-            }
-            board.add(thisRow);
+        GameMetrics.OperationEvent call = GameMetrics.ENABLED ? GameMetrics.COMPRESS_BOARD.begin() : null;
+
+        int removed = 0;
+        for (BoardSquare tile : cardsToRemove) {
+            int slot = slot(tile.getRowPos(), tile.getColPos());
+            if (slot < 0 || slot >= size || board[slot] != tile)
+                continue;
+            board[slot] = null;
+            untrack(tile);
+            removed++;
+        }
+
+        int newSize = size - removed;
+        int from = size;
+        for (int hole = 0; hole < newSize; hole++) {
+            if (board[hole] != null)
+                continue;
+
+            // fill the hole with the last remaining card
+            do {
+                from--;
+            } while (board[from] == null);
+
+            BoardSquare tile = board[from];
+            board[from] = null;
+            board[hole] = tile;
+
+            // update BoardSquare with new row and column positions
+            tile.setRowPos(hole % ROWS);
+            tile.setColPos(hole / ROWS);
         }
+
+        // clear out the slots past the end of the Board
+        for (int slot = newSize; slot < size; slot++)
+            board[slot] = null;
+        size = newSize;
+
+        if (GameMetrics.ENABLED) GameMetrics.COMPRESS_BOARD.end(call);
     }
 
     /**
@@ -53,7 +96,9 @@ public class Board {
      * @return the specified BoardSquare
      */
     public BoardSquare getBoardSquare(int row, int col) {
-        return board.get(row).get(col);
+        if (row < 0 || row >= ROWS || col < 0 || col >= numCols())
+            throw new IndexOutOfBoundsException(String.format("no BoardSquare at (r:%d, c:%d)", row, col));
+        return board[slot(row, col)];
     }
 
     /**
@@ -61,28 +106,288 @@ public class Board {
      * @param deck the Deck to draw the Cards from
      */
     public void add3(Deck deck) {
-        for (ArrayList<BoardSquare> row : board) {
-            int currentRow = row.get(0).getRowPos();
-            int currentCol = row.size();
-            BoardSquare tile = new BoardSquare(deck.getTopCard(), currentRow, currentCol);
-            row.add(tile);
-        }
+        if (size + ROWS > CAPACITY)
+            throw new IllegalStateException("Board is full");
+
+        int currentCol = numCols();
+        for (int row = 0; row < ROWS; row++)
+            place(new BoardSquare(deck.getTopCard(), row, currentCol));
     }
 
     /**
      * @return the number of rows in the Board
      */
     public int numRows() {
-        return board.size();
+        return ROWS;
     }
 
     /**
      * @return the number of columns in the Board
      */
     public int numCols() {
-        return board.get(0).size();
+        return size / ROWS;
+    }
+
+    /**
+     * @return the number of Cards on the Board
+     */
+    public int numCards() {
+        return size;
+    }
+
+    /**
+     * @param slot the position of a BoardSquare in the flat array, as returned by slotOf()
+     * @return the BoardSquare in that slot
+     */
+    BoardSquare getBoardSquare(int slot) {
+        return board[slot];
+    }
+
+    /**
+     * @param tile a BoardSquare on this Board
+     * @return the position of the BoardSquare in the flat array
+     */
+    int slotOf(BoardSquare tile) {
+        return slot(tile.getRowPos(), tile.getColPos());
+    }
+
+    /**
+     * Writes the Cards on this Board slot by slot, one byte per Card index, preceded by their count,
+     * followed by the currentlySelected flags of every slot as a 3-byte bitmask.
+     * @param buf the buffer to write to
+     */
+    void writeTo(ByteBuffer buf) {
+        int selected = 0;
+        buf.put((byte) size);
+        for (int slot = 0; slot < size; slot++) {
+            buf.put((byte) board[slot].getCard().getIndex());
+            if (board[slot].isCurrentlySelected())
+                selected |= 1 << slot;
+        }
+
+        buf.put((byte) selected);
+        buf.put((byte) (selected >>> 8));
+        buf.put((byte) (selected >>> 16));
+    }
+
+    /**
+     * Reads the Cards written by writeTo(), without changing any Board.
+     * @param buf the buffer to read from
+     * @return the Card indices slot by slot; they are not checked against the Card range
+     * @throws IllegalArgumentException if the count does not fill whole columns of a Board
+     */
+    static int[] readCards(ByteBuffer buf) {
+        int count = buf.get() & 0xFF;
+        if (count > CAPACITY || count % ROWS != 0)
+            throw new IllegalArgumentException(String.format("a Board cannot hold %d Cards", count));
+        int[] cards = new int[count];
+        for (int slot = 0; slot < count; slot++)
+            cards[slot] = buf.get() & 0xFF;
+        return cards;
+    }
+
+    /**
+     * Reads the selection flags written by writeTo(), after the Cards.
+     * @param buf the buffer to read from
+     * @param size the number of Cards on the Board being read
+     * @return the selected slots, as a bitmask
+     * @throws IllegalArgumentException if a slot past the last Card is selected
+     */
+    static int readSelection(ByteBuffer buf, int size) {
+        int selected = (buf.get() & 0xFF) | (buf.get() & 0xFF) << 8 | (buf.get() & 0xFF) << 16;
+        if (selected >>> size != 0)
+            throw new IllegalArgumentException(String.format("selection %06x past the %d Cards on the Board", selected, size));
+        return selected;
+    }
+
+    /**
+     * Replaces the contents of this Board with Cards read by readCards(), reusing its BoardSquares where it can.
+     * @param cards valid, distinct Card indices, slot by slot
+     * @param selected the selected slots, as a bitmask
+     */
+    void restore(int[] cards, int selected) {
+        for (int slot = 0; slot < size; slot++)
+            untrack(board[slot]);
+
+        for (int slot = 0; slot < cards.length; slot++) {
+            Card card = Card.of(cards[slot]);
+            BoardSquare tile = board[slot];
+            if (tile == null) {
+                tile = new BoardSquare(card, slot % ROWS, slot / ROWS);
+                board[slot] = tile;
+            }
+            tile.setCard(card);
+            tile.setCurrentlySelected((selected & (1 << slot)) != 0);
+            track(tile);
+        }
+        for (int slot = cards.length; slot < size; slot++)
+            board[slot] = null;
+        size = cards.length;
+    }
+
+    /**
+     * @return the position in the flat array of the BoardSquare at the given row and column
+     */
+    private static int slot(int row, int col) {
+        return col * ROWS + row;
+    }
+
+    /**
+     * Puts a new BoardSquare in the next free slot of the Board.
+     * @param tile the BoardSquare, whose row and column must match the next free slot
+     */
+    private void place(BoardSquare tile) {
+        board[size++] = tile;
+        track(tile);
     }
 
+    // region set index
+
+    /**
+     * @return whether or not there is at least one set on the Board.
+     */
+    public boolean hasSet() {
+        return numSets > 0;
+    }
+
+    /**
+     * @return the number of sets on the Board.
+     */
+    public int countSets() {
+        return numSets;
+    }
+
+    /**
+     * Finds one of the sets on the Board. The set returned only depends on which Cards are on the Board,
+     * not on the order in which they arrived.
+     * @return an Array of three BoardSquares that form a set, or an empty Array if there are none.
+     */
+    public BoardSquare[] findSet() {
+        if (numSets == 0)
+            return new BoardSquare[] {};
+
+        int first = sets[0];
+        for (int s = 1; s < numSets; s++)
+            first = Math.min(first, sets[s]);
+        return unpackSet(first);
+    }
+
+    /**
+     * @return a number that changes whenever a Card enters or leaves the Board, so that a result computed from
+     *         the Board can tell whether it is still current.
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Finds where a Card is on the Board.
+     * @param card the Card to look for
+     * @return the BoardSquare holding the Card, or null if the Card is not on the Board.
+     */
+    public BoardSquare getBoardSquare(Card card) {
+        return squareOf[card.getIndex()];
+    }
+
+    /**
+     * Lists every set on the Board.
+     * @return an ArrayList of every set, each one an Array of three BoardSquares.
+     */
+    public ArrayList<BoardSquare[]> findAllSets() {
+        ArrayList<BoardSquare[]> all = new ArrayList<>(numSets);
+        for (int s = 0; s < numSets; s++)
+            all.add(unpackSet(sets[s]));
+        return all;
+    }
+
+    /**
+     * Updates the set index when the Card held by one of this Board's BoardSquares is replaced.
+     * @param tile the BoardSquare whose Card changed
+     * @param oldCard the Card that used to occupy the BoardSquare
+     */
+    void cardReplaced(BoardSquare tile, Card oldCard) {
+        removeCard(oldCard.getIndex());
+        addCard(tile.getCard().getIndex(), tile);
+    }
+
+    /**
+     * Adds a BoardSquare (and its Card) to the set index.
+     * @param tile the BoardSquare that was placed on the Board
+     */
+    private void track(BoardSquare tile) {
+        tile.setBoard(this);
+        addCard(tile.getCard().getIndex(), tile);
+    }
+
+    /**
+     * Removes a BoardSquare (and its Card) from the set index.
+     * @param tile the BoardSquare that was taken off the Board
+     */
+    private void untrack(BoardSquare tile) {
+        tile.setBoard(null);
+        removeCard(tile.getCard().getIndex());
+    }
+
+    /**
+     * Records a Card entering the Board, along with every new set it completes.
+     * Only pairs involving the new Card are checked, so this costs O(n) for a Board of n Cards.
+     * @param index the index of the Card
+     * @param tile the BoardSquare holding the Card
+     */
+    private void addCard(int index, BoardSquare tile) {
+        for (int p = 0; p < numCardsOnBoard; p++) {
+            int other = cardsOnBoard[p];
+            int third = Card.third(index, other);
+            if (squareOf[third] != null && other < third) {
+                if (numSets == sets.length)
+                    sets = Arrays.copyOf(sets, numSets * 2);
+                sets[numSets++] = packSet(index, other, third);
+            }
+        }
+        squareOf[index] = tile;
+        cardsOnBoard[numCardsOnBoard++] = index;
+        version++;
+    }
+
+    /**
+     * Records a Card leaving the Board, dropping every set that contained it.
+     * @param index the index of the Card
+     */
+    private void removeCard(int index) {
+        version++;
+        squareOf[index] = null;
+        for (int p = 0; p < numCardsOnBoard; p++) {
+            if (cardsOnBoard[p] == index) {
+                cardsOnBoard[p] = cardsOnBoard[--numCardsOnBoard];
+                break;
+            }
+        }
+        for (int s = numSets - 1; s >= 0; s--) {
+            int set = sets[s];
+            if ((set & 0xFF) == index || (set >>> 8 & 0xFF) == index || (set >>> 16) == index)
+                sets[s] = sets[--numSets];
+        }
+    }
+
+    /**
+     * @return three Card indices packed into a single int, 8 bits apiece, highest index in the highest bits.
+     */
+    private static int packSet(int i1, int i2, int i3) {
+        int lo = Math.min(i1, Math.min(i2, i3));
+        int hi = Math.max(i1, Math.max(i2, i3));
+        return lo | ((i1 + i2 + i3 - lo - hi) << 8) | (hi << 16);
+    }
+
+    /**
+     * @param set three Card indices packed by packSet()
+     * @return the BoardSquares holding the three Cards.
+     */
+    private BoardSquare[] unpackSet(int set) {
+        return new BoardSquare[] {squareOf[set & 0xFF], squareOf[set >>> 8 & 0xFF], squareOf[set >>> 16]};
+    }
+
+    // endregion set index
+
     /**
      * @return a String representation of this Board
      */
@@ -90,10 +395,10 @@ public class Board {
     public String toString() {
         StringBuilder sb = new StringBuilder();
 
-        for (ArrayList<BoardSquare> row : board) {
+        for (int row = 0; row < ROWS; row++) {
             sb.append("┃┃   ");
-            for (BoardSquare tile : row) {
-                sb.append(tile.getCard());
+            for (int col = 0; col < numCols(); col++) {
+                sb.append(board[slot(row, col)].getCard());
                 sb.append("   ┃┃   ");
             }
             sb.append("\n");
@@ -0,0 +1,85 @@
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Runs analyses of a Board (hints, set counts, endgame solves) on background threads, so the thread that plays
+ * the game never waits for them.
+ * <p>
+ * Each analysis works on a BoardSnapshot taken when it is submitted. Its result is handed back through the
+ * publisher (Platform::runLater in the GUI), and only if nothing changed in the meantime: cancelAll() cancels every
+ * analysis still running, and a result is dropped if the Board's version moved on before it could be published.
+ * Apart from the worker threads, everything here must be called on the thread that modifies the Board.
+ */
+public class BoardAnalyzer implements Closeable {
+    private final ExecutorService workers;
+    private final Executor publisher;
+    private final ArrayList<Future<?>> pending = new ArrayList<>();
+    private int generation;     // bumped by cancelAll(), so results from before it are dropped
+
+    /**
+     * Constructor.
+     * @param threads the number of background threads
+     * @param publisher runs the result callbacks on the thread that modifies the Board
+     */
+    public BoardAnalyzer(int threads, Executor publisher) {
+        this.publisher = publisher;
+        this.workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "board-analyzer");
+            t.setDaemon(true); // never keeps the application alive
+            return t;
+        });
+    }
+
+    /**
+     * Starts analyzing the Board in the background.
+     * @param board the Board to analyze, which is copied before this returns
+     * @param analysis the analysis, run on a background thread
+     * @param onResult receives the result through the publisher, unless the analysis was cancelled or the Board
+     *                 changed before then
+     * @param <T> the type of the result
+     * @return the Future of the analysis
+     */
+    public <T> Future<?> submit(Board board, Function<BoardSnapshot, T> analysis, Consumer<T> onResult) {
+        BoardSnapshot snapshot = new BoardSnapshot(board);
+        int submitted = generation;
+
+        pending.removeIf(Future::isDone);
+        Future<?> future = workers.submit(() -> {
+            T result = analysis.apply(snapshot);
+            if (Thread.currentThread().isInterrupted())
+                return;
+
+            publisher.execute(() -> {
+                if (submitted == generation && board.getVersion() == snapshot.getVersion())
+                    onResult.accept(result);
+            });
+        });
+        pending.add(future);
+        return future;
+    }
+
+    /**
+     * Cancels every analysis that has not published its result yet, e.g. because the Board changed.
+     */
+    public void cancelAll() {
+        generation++;
+        for (Future<?> future : pending)
+            future.cancel(true);
+        pending.clear();
+    }
+
+    /**
+     * Cancels every analysis and stops the background threads.
+     */
+    @Override
+    public void close() {
+        cancelAll();
+        workers.shutdownNow();
+    }
+}
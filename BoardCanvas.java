@@ -0,0 +1,143 @@
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+
+/**
+ * A view of the whole Board drawn onto a single Canvas, as an alternative to one CardPane per card.
+ * <p>
+ * Each card is a rectangle plus one drawImage() of its pre-rendered face, so the scene graph holds one node no matter
+ * how many cards are showing, and a redraw only happens when the board, the selection or the size changes.
+ * Start the GUI with {@code --renderer=canvas} to use it.
+ */
+public class BoardCanvas extends Pane {
+    public static final double GAP = 5;         // space between cards
+    public static final double PADDING = 10;    // space around the board
+    public static final double BORDER = 3;      // width of a card's border
+
+    private static final Color BACKGROUND = Color.DARKSLATEGREY;
+    private static final Color SELECTED = Color.LIGHTBLUE;
+    private static final Color HIGHLIGHT = Color.ORANGERED;
+
+    private final Canvas canvas = new Canvas();
+    private final CardSprites sprites;
+    private Board board;
+    private int highlighted;    // bitmask of the slots in the found set, cleared when the board changes
+
+    /**
+     * Constructor.
+     * @param sprites the cache of rendered card faces
+     */
+    public BoardCanvas(CardSprites sprites) {
+        this.sprites = sprites;
+        this.getChildren().add(canvas);
+    }
+
+    /**
+     * Shows a (new or changed) Board, clearing any highlighted set.
+     * @param board the Board to draw
+     */
+    public void update(Board board) {
+        this.board = board;
+        this.highlighted = 0;
+        this.requestLayout();
+        this.redraw();
+    }
+
+    /**
+     * Highlights a found set until the next update().
+     * @param set the BoardSquares of the set
+     */
+    public void highlight(BoardSquare[] set) {
+        for (BoardSquare bs : set)
+            highlighted |= 1 << board.slotOf(bs);
+        this.redraw();
+    }
+
+    /**
+     * Finds the card under a point, e.g. a mouse click.
+     * @param x the x coordinate, relative to this BoardCanvas
+     * @param y the y coordinate, relative to this BoardCanvas
+     * @return the BoardSquare drawn at (x, y), or null if the point is in a gap or outside the board
+     */
+    public BoardSquare squareAt(double x, double y) {
+        if (board == null || x < PADDING || y < PADDING)
+            return null;
+
+        double cellWidth = cardWidth() + GAP;
+        double cellHeight = cardHeight() + GAP;
+        int col = (int) ((x - PADDING) / cellWidth);
+        int row = (int) ((y - PADDING) / cellHeight);
+        if (x - PADDING - col * cellWidth >= cardWidth() || y - PADDING - row * cellHeight >= cardHeight())
+            return null;
+        if (row >= board.numRows() || col >= board.numCols())
+            return null;
+        return board.getBoardSquare(row, col);
+    }
+
+    /**
+     * Draws every card of the Board, with its selection and highlight.
+     */
+    public void redraw() {
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        gc.setFill(BACKGROUND);
+        gc.fillRect(0, 0, canvas.getWidth(), canvas.getHeight());
+        if (board == null)
+            return;
+
+        double w = cardWidth();
+        double h = cardHeight();
+        gc.setLineWidth(BORDER);
+        for (int slot = 0; slot < board.numCards(); slot++) {
+            BoardSquare bs = board.getBoardSquare(slot);
+            double x = PADDING + bs.getColPos() * (w + GAP);
+            double y = PADDING + bs.getRowPos() * (h + GAP);
+            boolean lit = (highlighted & 1 << slot) != 0;
+
+            // background, face, border
+            gc.setFill(bs.isCurrentlySelected() ? SELECTED : Color.WHITE);
+            gc.fillRect(x, y, w, h);
+            gc.drawImage(sprites.getFace(bs.getCard()), x + BORDER, y + BORDER);
+            gc.setStroke(lit ? HIGHLIGHT : Color.BLACK);
+            gc.setLineDashes(lit ? new double[] {9} : null);
+            gc.strokeRect(x + BORDER / 2, y + BORDER / 2, w - BORDER, h - BORDER);
+        }
+        gc.setLineDashes(null);
+    }
+
+    /**
+     * @return the width of a card, border included, at the sprites' current scale
+     */
+    public double cardWidth() {
+        return CardSprites.CARD_WIDTH * sprites.getScale() + 2 * BORDER;
+    }
+
+    /**
+     * @return the height of a card, border included, at the sprites' current scale
+     */
+    public double cardHeight() {
+        return CardSprites.CARD_HEIGHT * sprites.getScale() + 2 * BORDER;
+    }
+
+    @Override
+    protected double computePrefWidth(double height) {
+        int cols = board == null ? 0 : board.numCols();
+        return 2 * PADDING + cols * cardWidth() + Math.max(0, cols - 1) * GAP;
+    }
+
+    @Override
+    protected double computePrefHeight(double width) {
+        int rows = board == null ? 0 : board.numRows();
+        return 2 * PADDING + rows * cardHeight() + Math.max(0, rows - 1) * GAP;
+    }
+
+    @Override
+    protected void layoutChildren() {
+        // the canvas always covers the whole pane; only redraw when that actually resized it
+        if (canvas.getWidth() != this.getWidth() || canvas.getHeight() != this.getHeight()) {
+            canvas.setWidth(this.getWidth());
+            canvas.setHeight(this.getHeight());
+            this.redraw();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+import java.util.ArrayList;
+
+/**
+ * An immutable copy of a Board, taken on the thread that plays the game, that background threads can analyze
+ * while the real Board moves on.
+ * <p>
+ * Results refer to cards by slot (col * 3 + row, as in Board), so they can be mapped back onto the real Board's
+ * BoardSquares for as long as its version still matches getVersion().
+ */
+public final class BoardSnapshot {
+    private final Board board;      // private copy, never modified after construction
+    private final int version;
+
+    /**
+     * Constructor.
+     * Must be called on the thread that modifies the Board.
+     * @param board the Board to copy
+     */
+    public BoardSnapshot(Board board) {
+        this.board = new Board(board);
+        this.version = board.getVersion();
+    }
+
+    /**
+     * @return the version of the Board when this snapshot was taken
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * @return the number of cards in the snapshot
+     */
+    public int numCards() {
+        return board.numCards();
+    }
+
+    /**
+     * @return the number of sets in the snapshot
+     */
+    public int countSets() {
+        return board.countSets();
+    }
+
+    /**
+     * Finds the same set that Board.findSet() would.
+     * @return the slots of the three cards of the set, or an empty Array if there is no set
+     */
+    public int[] findSet() {
+        return slotsOf(board.findSet());
+    }
+
+    /**
+     * Solves the endgame from the snapshot, as EndgameSolver.solve() does.
+     * @param solver the solver to use, which must not be used by any other thread at the same time
+     * @return the sets to take, in order, each one the slots of its three cards
+     */
+    public ArrayList<int[]> solve(EndgameSolver solver) {
+        ArrayList<int[]> sequence = new ArrayList<>();
+        for (BoardSquare[] set : solver.solve(board))
+            sequence.add(slotsOf(set));
+        return sequence;
+    }
+
+    /**
+     * @param squares BoardSquares of the private copy
+     * @return their slots
+     */
+    private int[] slotsOf(BoardSquare[] squares) {
+        int[] slots = new int[squares.length];
+        for (int i = 0; i < squares.length; i++)
+            slots[i] = board.slotOf(squares[i]);
+        return slots;
+    }
+}
@@ -3,6 +3,7 @@ public class BoardSquare {
     private int rowPos;
     private int colPos;
     private boolean currentlySelected;
+    private Board board;
 
     /**
      * Constructor.
@@ -53,7 +54,12 @@ public class BoardSquare {
      * @param card the Card that should occupy this BoardSquare
      */
     public void setCard(Card card) {
+        Card oldCard = this.card;
         this.card = card;
+
+        // keep the owning Board's set index up to date
+        if (board != null)
+            board.cardReplaced(this, oldCard);
     }
 
     /**
@@ -77,6 +83,13 @@ public class BoardSquare {
         this.currentlySelected = val;
     }
 
+    /**
+     * @param board the Board this BoardSquare currently belongs to, or null if it has been removed from play
+     */
+    void setBoard(Board board) {
+        this.board = board;
+    }
+
     // endregion
 
 
@@ -85,9 +98,9 @@ public class BoardSquare {
      */
     @Override
     public String toString() {
-        StringBuilder sb = new StringBuilder();
+        StringBuilder sb = new StringBuilder(64);
 
-        sb.append(String.format("BoardSquare at (r:%d, c:%d) contains ", rowPos, colPos));
+        sb.append("BoardSquare at (r:").append(rowPos).append(", c:").append(colPos).append(") contains ");
         sb.append(card);
 
         return sb.toString();
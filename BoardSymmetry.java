@@ -0,0 +1,443 @@
+import java.util.Arrays;
+
+/**
+ * Canonical forms of collections of Cards under the symmetries of the game: permuting the four attributes,
+ * and permuting the three values within each attribute (which includes translating them).
+ * <p>
+ * These 24 * 6^4 = 31104 symmetries map sets to sets, so two boards related by one of them are the same
+ * position. {@link #canonicalMask} maps every board to the same representative as all the boards in its orbit.
+ * <p>
+ * Instead of trying all 31104 symmetries, the search only tries those that move one particular card to card 0:
+ * a translation fixes which card lands on 0, leaving 24 attribute permutations times 2^4 value reflections.
+ * The card is chosen among those with the smallest invariant signature (the number of sets through it and how
+ * many cards differ from it in 1, 2, 3 or 4 attributes), which usually leaves only a few candidates.
+ * <p>
+ * Seen as vectors of four integers mod 3, the cards of a set are the points of a line, so every affine map
+ * x -&gt; Ax + b maps sets to sets, including maps that mix attributes. {@link #affineCanonicalize} works under that
+ * whole group of 1,965,150,720 maps, for counting problems that only care where the sets are. An affine map is
+ * fixed by where it sends a basis: it picks a base card and a card in every new direction, maps them to card 0 and
+ * the unit vectors, and keeps the smallest image. At every step only the cards with the smallest invariant (how
+ * many pairs of the cards complete the same third card, and how many cards the new flat takes in) are tried.
+ */
+public class BoardSymmetry {
+    public static final int GROUP_ORDER = 31104;
+    public static final long AFFINE_GROUP_ORDER = 81L * 80 * 78 * 72 * 54;
+
+    private static final int[] UNIT = {27, 9, 3, 1};                // the unit vectors, attribute 0 first
+    private static final long[] FLAT_FIXERS = new long[5];          // affine maps fixing every card of a d-flat
+
+    private static final int MAPS = 384;                            // symmetries fixing card 0
+    private static final byte[] MAP = new byte[MAPS * 81];          // MAP[m * 81 + x]: card x under symmetry m
+    private static final byte[] MINUS = new byte[81 * 81];          // MINUS[x * 81 + t]: card x translated by -t
+    private static final byte[] PLUS = new byte[81 * 81];           // PLUS[x * 81 + t]: card x translated by t
+    private static final byte[] DISTANCE = new byte[81 * 81];       // number of attributes in which two cards differ
+
+    static {
+        int[][] perms = new int[24][];
+        int count = 0;
+        for (int a = 0; a < 4; a++)
+            for (int b = 0; b < 4; b++)
+                for (int c = 0; c < 4; c++)
+                    for (int d = 0; d < 4; d++)
+                        if (a != b && a != c && a != d && b != c && b != d && c != d)
+                            perms[count++] = new int[] {a, b, c, d};
+
+        for (int p = 0; p < 24; p++) {
+            for (int signs = 0; signs < 16; signs++) {
+                int m = p * 16 + signs;
+                for (int x = 0; x < 81; x++) {
+                    int[] digits = digits(x);
+                    int[] image = new int[4];
+                    for (int a = 0; a < 4; a++) {
+                        int v = digits[perms[p][a]];
+                        image[a] = (signs >> a & 1) == 1 ? (3 - v) % 3 : v;
+                    }
+                    MAP[m * 81 + x] = (byte) index(image);
+                }
+            }
+        }
+
+        for (int x = 0; x < 81; x++) {
+            for (int t = 0; t < 81; t++) {
+                int[] dx = digits(x), dt = digits(t);
+                int[] diff = new int[4];
+                int[] sum = new int[4];
+                int distance = 0;
+                for (int a = 0; a < 4; a++) {
+                    diff[a] = (dx[a] - dt[a] + 3) % 3;
+                    sum[a] = (dx[a] + dt[a]) % 3;
+                    if (dx[a] != dt[a])
+                        distance++;
+                }
+                MINUS[x * 81 + t] = (byte) index(diff);
+                PLUS[x * 81 + t] = (byte) index(sum);
+                DISTANCE[x * 81 + t] = (byte) distance;
+            }
+        }
+
+        // the linear maps fixing the first d unit vectors send each of the others outside the span so far
+        for (int d = 0; d <= 4; d++) {
+            FLAT_FIXERS[d] = 1;
+            for (int j = d; j < 4; j++)
+                FLAT_FIXERS[d] *= 81 - 27 / UNIT[j];
+        }
+    }
+
+    /**
+     * @param cards distinct Cards
+     * @return the canonical representative of the Cards' orbit, as an 81-bit mask of Card indices:
+     *         {indices 0..63, indices 64..80}
+     */
+    public static long[] canonicalMask(Card... cards) {
+        long[] mask = new long[2];
+        canonicalize(indicesOf(cards), cards.length, mask);
+        return mask;
+    }
+
+    /**
+     * @param cards distinct Cards
+     * @return the Cards of the canonical representative of their orbit, in index order
+     */
+    public static Card[] canonical(Card... cards) {
+        long[] mask = canonicalMask(cards);
+        Card[] canonical = new Card[cards.length];
+        int n = 0;
+        for (int i = 0; i < 81; i++)
+            if ((mask[i >> 6] >>> (i & 63) & 1) == 1)
+                canonical[n++] = Card.of(i);
+        return canonical;
+    }
+
+    /**
+     * @param board a Board
+     * @return the Cards of the canonical representative of the Board's orbit, in index order
+     */
+    public static Card[] canonical(Board board) {
+        return canonical(cardsOf(board));
+    }
+
+    /**
+     * @param cards distinct Cards
+     * @return the number of distinct collections of Cards the symmetries map these Cards to
+     */
+    public static int orbitSize(Card... cards) {
+        return GROUP_ORDER / canonicalize(indicesOf(cards), cards.length, new long[2]);
+    }
+
+    /**
+     * Hashes the invariants of a collection of Cards. Equal for every collection in the same orbit, and cheaper
+     * than a canonical form, but different orbits may collide.
+     * @param cards distinct Cards
+     * @return the orbit hash
+     */
+    public static long orbitHash(Card... cards) {
+        int[] indices = indicesOf(cards);
+        long[] signatures = signatures(indices, cards.length);
+        Arrays.sort(signatures);
+
+        long hash = cards.length;
+        for (long signature : signatures)
+            hash = (hash ^ signature) * 0x9E3779B97F4A7C15L;
+        return hash ^ (hash >>> 29);
+    }
+
+    /**
+     * @param board a Board
+     * @return the orbit hash of the Cards on the Board
+     */
+    public static long orbitHash(Board board) {
+        return orbitHash(cardsOf(board));
+    }
+
+    /**
+     * Computes the canonical form of a collection of Card indices.
+     * @param indices distinct Card indices, in the first n entries
+     * @param n the number of Cards
+     * @param mask receives the canonical 81-bit mask: {indices 0..63, indices 64..80}
+     * @return the number of symmetries that map the Cards to their canonical form (the size of their stabilizer)
+     */
+    public static int canonicalize(int[] indices, int n, long[] mask) {
+        mask[0] = 0;
+        mask[1] = 0;
+        if (n == 0)
+            return GROUP_ORDER;
+
+        // only the cards with the smallest signature can be moved to card 0
+        long[] signatures = signatures(indices, n);
+        long smallest = Long.MAX_VALUE;
+        for (int i = 0; i < n; i++)
+            smallest = Math.min(smallest, signatures[i]);
+
+        long bestLo = -1, bestHi = -1;
+        int ties = 0;
+        int[] translated = new int[n];
+        for (int p = 0; p < n; p++) {
+            if (signatures[p] != smallest)
+                continue;
+
+            for (int i = 0; i < n; i++)
+                translated[i] = MINUS[indices[i] * 81 + indices[p]];
+
+            for (int m = 0; m < MAPS; m++) {
+                long lo = 0, hi = 0;
+                int base = m * 81;
+                for (int i = 0; i < n; i++) {
+                    int image = MAP[base + translated[i]];
+                    if (image < 64)
+                        lo |= 1L << image;
+                    else
+                        hi |= 1L << (image - 64);
+                }
+
+                int cmp = hi != bestHi ? Long.compareUnsigned(hi, bestHi) : Long.compareUnsigned(lo, bestLo);
+                if (cmp < 0) {
+                    bestLo = lo;
+                    bestHi = hi;
+                    ties = 1;
+                }
+                else if (cmp == 0) {
+                    ties++;
+                }
+            }
+        }
+
+        mask[0] = bestLo;
+        mask[1] = bestHi;
+
+        // every symmetry sending a minimal-signature card to 0 is tried exactly once, so the ties are the stabilizer
+        return ties;
+    }
+
+    /**
+     * Computes the canonical form of a collection of Card indices under every affine map of the cards.
+     * @param indices distinct Card indices, in the first n entries
+     * @param n the number of Cards, at least 1
+     * @param mask receives the canonical 81-bit mask: {indices 0..63, indices 64..80}
+     * @return the number of affine maps that map the Cards onto themselves (the size of their stabilizer), so that
+     *         AFFINE_GROUP_ORDER / stabilizer collections of Cards share this canonical form
+     */
+    public static long affineCanonicalize(int[] indices, int n, long[] mask) {
+        if (n < 1)
+            throw new IllegalArgumentException("no affine canonical form of an empty collection");
+        AffineSearch search = new AffineSearch(indices, n);
+        search.run();
+        mask[0] = search.bestLo;
+        mask[1] = search.bestHi;
+
+        // the bases tried that give the smallest image are an orbit of the stabilizer, which only stops acting
+        // on them once it fixes the whole flat the Cards span
+        return search.ties * FLAT_FIXERS[search.dimension];
+    }
+
+    /**
+     * The search for the affine basis giving the smallest image of a collection of Cards.
+     */
+    private static class AffineSearch {
+        private final int[] indices;
+        private final int n;
+        private final long cardsLo;
+        private final long cardsHi;
+        private final long[] signatures = new long[81];     // by Card index, for the Cards in the collection
+        private final int dimension;                        // of the flat the Cards span
+
+        private long bestLo = -1;
+        private long bestHi = -1;
+        private long ties;
+
+        AffineSearch(int[] indices, int n) {
+            this.indices = indices;
+            this.n = n;
+            long lo = 0, hi = 0;
+            for (int i = 0; i < n; i++) {
+                if (indices[i] < 64)
+                    lo |= 1L << indices[i];
+                else
+                    hi |= 1L << (indices[i] - 64);
+            }
+            cardsLo = lo;
+            cardsHi = hi;
+
+            // how many pairs complete each third card, and, for every Card, how its pairs spread over those counts
+            int[] completions = new int[81];
+            for (int i = 0; i < n; i++)
+                for (int j = i + 1; j < n; j++)
+                    completions[Card.third(indices[i], indices[j])]++;
+            for (int i = 0; i < n; i++)
+                for (int j = 0; j < n; j++)
+                    if (i != j)
+                        signatures[indices[i]] += 1L << 5 * (completions[Card.third(indices[i], indices[j])] - 1);
+
+            int[] flat = new int[81];
+            int size = 1;
+            flat[0] = indices[0];
+            lo = bit(indices[0], 0);
+            hi = bit(indices[0], 64);
+            int d = 0;
+            for (int i = 1; i < n; i++) {
+                if (contains(lo, hi, indices[i]))
+                    continue;
+                // the flat grows by two translates of itself along the new direction
+                int direction = MINUS[indices[i] * 81 + indices[0]];
+                for (int end = size * 3; size < end; size++) {
+                    flat[size] = PLUS[flat[size - end / 3] * 81 + direction];
+                    lo |= bit(flat[size], 0);
+                    hi |= bit(flat[size], 64);
+                }
+                d++;
+            }
+            dimension = d;
+        }
+
+        void run() {
+            long smallest = Long.MAX_VALUE;
+            for (int i = 0; i < n; i++)
+                smallest = Math.min(smallest, signatures[indices[i]]);
+            for (int i = 0; i < n; i++)
+                if (signatures[indices[i]] == smallest)
+                    extend(1, new int[] {indices[i]}, new int[] {0}, bit(indices[i], 0), bit(indices[i], 64));
+        }
+
+        /**
+         * Picks the next card of the basis among those outside the flat spanned so far, then recurses.
+         * @param step the number of cards in the basis so far
+         * @param flat the cards of the flat spanned so far, the base card first
+         * @param images their images: card 0 plus the unit vectors, with the coefficients of the basis directions
+         */
+        private void extend(int step, int[] flat, int[] images, long flatLo, long flatHi) {
+            if (step > dimension) {
+                long lo = 0, hi = 0;
+                for (int t = 0; t < flat.length; t++) {
+                    if (contains(cardsLo, cardsHi, flat[t])) {
+                        lo |= bit(images[t], 0);
+                        hi |= bit(images[t], 64);
+                    }
+                }
+                int cmp = hi != bestHi ? Long.compareUnsigned(hi, bestHi) : Long.compareUnsigned(lo, bestLo);
+                if (cmp < 0) {
+                    bestLo = lo;
+                    bestHi = hi;
+                    ties = 1;
+                }
+                else if (cmp == 0) {
+                    ties++;
+                }
+                return;
+            }
+
+            // the invariant of a candidate: how many of the Cards the flat takes in with it, then its signature
+            long[] invariants = new long[n];
+            long smallest = Long.MAX_VALUE;
+            for (int i = 0; i < n; i++) {
+                if (contains(flatLo, flatHi, indices[i])) {
+                    invariants[i] = Long.MAX_VALUE;
+                    continue;
+                }
+                int direction = MINUS[indices[i] * 81 + flat[0]];
+                long added = 0;
+                for (int t = 0; t < flat.length; t++) {
+                    int once = PLUS[flat[t] * 81 + direction];
+                    if (contains(cardsLo, cardsHi, once))
+                        added++;
+                    if (contains(cardsLo, cardsHi, PLUS[once * 81 + direction]))
+                        added++;
+                }
+                invariants[i] = added << 50 | signatures[indices[i]];
+                smallest = Math.min(smallest, invariants[i]);
+            }
+
+            for (int i = 0; i < n; i++) {
+                if (invariants[i] != smallest)
+                    continue;
+                int direction = MINUS[indices[i] * 81 + flat[0]];
+                int[] nextFlat = Arrays.copyOf(flat, flat.length * 3);
+                int[] nextImages = Arrays.copyOf(images, images.length * 3);
+                long lo = flatLo, hi = flatHi;
+                for (int t = flat.length; t < nextFlat.length; t++) {
+                    nextFlat[t] = PLUS[nextFlat[t - flat.length] * 81 + direction];
+                    nextImages[t] = nextImages[t - flat.length] + UNIT[step - 1];
+                    lo |= bit(nextFlat[t], 0);
+                    hi |= bit(nextFlat[t], 64);
+                }
+                extend(step + 1, nextFlat, nextImages, lo, hi);
+            }
+        }
+    }
+
+    private static boolean contains(long lo, long hi, int index) {
+        return index < 64 ? (lo >>> index & 1) != 0 : (hi >>> (index - 64) & 1) != 0;
+    }
+
+    /**
+     * @return the bit of a Card index within the half of the mask starting at base, or 0 if it is in the other half
+     */
+    private static long bit(int index, int base) {
+        int shift = index - base;
+        return shift >= 0 && shift < 64 ? 1L << shift : 0;
+    }
+
+    /**
+     * @return for every card, the number of sets through it and how many cards differ from it in
+     *         1, 2, 3 or 4 attributes, packed 7 bits apiece
+     */
+    private static long[] signatures(int[] indices, int n) {
+        long lo = 0, hi = 0;
+        for (int i = 0; i < n; i++) {
+            if (indices[i] < 64)
+                lo |= 1L << indices[i];
+            else
+                hi |= 1L << (indices[i] - 64);
+        }
+
+        long[] signatures = new long[n];
+        for (int i = 0; i < n; i++) {
+            long sets = 0;
+            long[] distances = new long[5];
+            for (int j = 0; j < n; j++) {
+                if (i == j)
+                    continue;
+                distances[DISTANCE[indices[i] * 81 + indices[j]]]++;
+                int third = Card.third(indices[i], indices[j]);
+                if (((third < 64 ? lo >>> third : hi >>> (third - 64)) & 1) != 0)
+                    sets++;
+            }
+            signatures[i] = (sets / 2) << 28 | distances[1] << 21 | distances[2] << 14 | distances[3] << 7 | distances[4];
+        }
+        return signatures;
+    }
+
+    /**
+     * @return the base-3 digits of a Card index, attribute 0 first
+     */
+    private static int[] digits(int index) {
+        return new int[] {index / 27, index / 9 % 3, index / 3 % 3, index % 3};
+    }
+
+    /**
+     * @return the Card index with the given base-3 digits, attribute 0 first
+     */
+    private static int index(int[] digits) {
+        return digits[0] * 27 + digits[1] * 9 + digits[2] * 3 + digits[3];
+    }
+
+    /**
+     * @return the indices of the given Cards
+     */
+    private static int[] indicesOf(Card[] cards) {
+        int[] indices = new int[cards.length];
+        for (int i = 0; i < cards.length; i++)
+            indices[i] = cards[i].getIndex();
+        return indices;
+    }
+
+    /**
+     * @return the Cards on a Board
+     */
+    private static Card[] cardsOf(Board board) {
+        Card[] cards = new Card[board.numCards()];
+        int n = 0;
+        for (int row = 0; row < board.numRows(); row++)
+            for (int col = 0; col < board.numCols(); col++)
+                cards[n++] = board.getBoardSquare(row, col).getCard();
+        return cards;
+    }
+}
@@ -0,0 +1,87 @@
+import java.util.ArrayList;
+
+/**
+ * A read-only view of a Game's Board, handed to a Player so it can look at the cards without being able to
+ * move or replace them.
+ * <p>
+ * Cards are addressed by slot (col * 3 + row, as in Board), and a set is an Array of three slots.
+ */
+public final class BoardView {
+    private final Game game;
+
+    /**
+     * Constructor.
+     * @param game the Game whose Board is viewed
+     */
+    public BoardView(Game game) {
+        this.game = game;
+    }
+
+    /**
+     * @return the number of cards on the Board
+     */
+    public int numCards() {
+        return game.numCardsOnBoard();
+    }
+
+    /**
+     * @return the number of columns on the Board
+     */
+    public int numCols() {
+        return game.getBoard().numCols();
+    }
+
+    /**
+     * @param slot a slot, from 0 to numCards() - 1
+     * @return the Card in the slot
+     */
+    public Card getCard(int slot) {
+        return game.getBoard().getBoardSquare(slot).getCard();
+    }
+
+    /**
+     * @return the number of cards left in the deck
+     */
+    public int cardsRemaining() {
+        return game.cardsRemaining();
+    }
+
+    /**
+     * @return whether three more cards can be added to the Board
+     */
+    public boolean canAdd3() {
+        return game.cardsRemaining() >= 3 && game.numCardsOnBoard() + 3 <= Board.CAPACITY;
+    }
+
+    /**
+     * @return the number of sets on the Board
+     */
+    public int countSets() {
+        return game.countSets();
+    }
+
+    /**
+     * @return the slots of the set that Game.findSet() finds, or an empty Array if there is none
+     */
+    public int[] findSet() {
+        return slotsOf(game.findSet());
+    }
+
+    /**
+     * @return the slots of every set on the Board
+     */
+    public ArrayList<int[]> findAllSets() {
+        ArrayList<BoardSquare[]> sets = game.findAllSets();
+        ArrayList<int[]> all = new ArrayList<>(sets.size());
+        for (BoardSquare[] set : sets)
+            all.add(slotsOf(set));
+        return all;
+    }
+
+    private int[] slotsOf(BoardSquare[] squares) {
+        int[] slots = new int[squares.length];
+        for (int i = 0; i < squares.length; i++)
+            slots[i] = game.getBoard().slotOf(squares[i]);
+        return slots;
+    }
+}
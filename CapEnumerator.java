@@ -0,0 +1,275 @@
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Exact counts of set-free collections of cards ("caps"): how many k-card boards contain no set, and so force
+ * Game.add3(). No cap has more than 20 cards.
+ * <p>
+ * Every affine map of the cards maps sets to sets, and so caps to caps, so caps are only enumerated up to those
+ * maps: one canonical cap per orbit, as computed by BoardSymmetry.affineCanonicalize, grown one card at a time.
+ * Every (k+1)-card cap contains a k-card cap, so extending every orbit of k-card caps by every card that keeps it
+ * set-free, and keeping the distinct canonical forms, gives every orbit of (k+1)-card caps. An orbit holds
+ * AFFINE_GROUP_ORDER / stabilizer caps. There are never more than a few thousand orbits of a size, against
+ * trillions of caps.
+ * <p>
+ * The orbits of a size are extended in parallel on the common fork-join pool. Every finished size is appended to a
+ * checkpoint file, and a restarted run, whatever its largest size, resumes after the last size written in full.
+ */
+public class CapEnumerator {
+    public static final int MAX_CAP = 20;
+
+    private final int maxSize;
+    private final Path checkpoint;
+
+    /**
+     * Constructor.
+     * @param maxSize the largest cap size to count, at most MAX_CAP + 1
+     * @param checkpoint the file recording finished sizes, or null to run without checkpoints
+     */
+    public CapEnumerator(int maxSize, Path checkpoint) {
+        if (maxSize < 1 || maxSize > MAX_CAP + 1)
+            throw new IllegalArgumentException(String.format("cap size must be 1..%d: %d", MAX_CAP + 1, maxSize));
+        this.maxSize = maxSize;
+        this.checkpoint = checkpoint;
+    }
+
+    /**
+     * Counts every cap of up to maxSize cards, resuming from the checkpoint file if there is one.
+     * @return the number of caps of every size, indexed by size
+     * @throws IOException if the checkpoint file cannot be read or written
+     */
+    public long[] run() throws IOException {
+        long[] caps = new long[maxSize + 1];
+        caps[0] = 1;
+
+        // every single card is in the orbit of card 0
+        long[] mask = new long[2];
+        long stabilizer = BoardSymmetry.affineCanonicalize(new int[] {0}, 1, mask);
+        List<Orbit> orbits = List.of(new Orbit(mask[0], mask[1], stabilizer));
+        caps[1] = count(orbits);
+
+        List<List<Orbit>> saved = readCheckpoint();
+        for (int size = 2; size <= maxSize; size++) {
+            if (size - 2 < saved.size()) {
+                orbits = saved.get(size - 2);
+            }
+            else {
+                orbits = extend(orbits, size - 1);
+                writeCheckpoint(size, orbits);
+            }
+            caps[size] = count(orbits);
+        }
+        return caps;
+    }
+
+    /**
+     * The canonical form of an orbit of caps, with the size of its stabilizer.
+     */
+    private static class Orbit {
+        private final long lo;
+        private final long hi;
+        private final long stabilizer;
+
+        Orbit(long lo, long hi, long stabilizer) {
+            this.lo = lo;
+            this.hi = hi;
+            this.stabilizer = stabilizer;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Orbit))
+                return false;
+            Orbit other = (Orbit) o;
+            return lo == other.lo && hi == other.hi;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(lo * 0x9E3779B97F4A7C15L ^ hi);
+        }
+    }
+
+    /**
+     * Grows every orbit of caps by one card.
+     * @param orbits the orbits of caps of one size
+     * @param size the number of cards in those caps
+     * @return the orbits of caps one card larger, in canonical order
+     */
+    private static List<Orbit> extend(List<Orbit> orbits, int size) {
+        ConcurrentHashMap<Orbit, Orbit> larger = new ConcurrentHashMap<>();
+        orbits.parallelStream().forEach(orbit -> {
+            int[] cards = new int[size + 1];
+            int n = 0;
+            for (int card = 0; card < 81; card++)
+                if (contains(orbit.lo, orbit.hi, card))
+                    cards[n++] = card;
+
+            // the cards that would complete a set with two of the cap's
+            long forbiddenLo = orbit.lo, forbiddenHi = orbit.hi;
+            for (int i = 0; i < size; i++) {
+                for (int j = i + 1; j < size; j++) {
+                    int third = Card.third(cards[i], cards[j]);
+                    forbiddenLo |= bit(third, 0);
+                    forbiddenHi |= bit(third, 64);
+                }
+            }
+
+            long[] mask = new long[2];
+            for (int card = 0; card < 81; card++) {
+                if (contains(forbiddenLo, forbiddenHi, card))
+                    continue;
+                cards[size] = card;
+                long stabilizer = BoardSymmetry.affineCanonicalize(cards, size + 1, mask);
+                Orbit child = new Orbit(mask[0], mask[1], stabilizer);
+                larger.putIfAbsent(child, child);
+            }
+        });
+
+        // a fixed order, so that a run and its checkpoint always list the orbits alike
+        List<Orbit> sorted = new ArrayList<>(larger.keySet());
+        sorted.sort(Comparator.<Orbit>comparingLong(o -> o.hi ^ Long.MIN_VALUE).thenComparingLong(o -> o.lo ^ Long.MIN_VALUE));
+        return sorted;
+    }
+
+    /**
+     * @return the number of caps in some orbits
+     */
+    private static long count(List<Orbit> orbits) {
+        long caps = 0;
+        for (Orbit orbit : orbits)
+            caps = Math.addExact(caps, BoardSymmetry.AFFINE_GROUP_ORDER / orbit.stabilizer);
+        return caps;
+    }
+
+    // region checkpoints
+
+    /**
+     * Reads the sizes written in full to the checkpoint file. A run killed while writing leaves the last size cut
+     * short, possibly in the middle of a line: that size is dropped, and the file is cut back to the sizes before it
+     * so that the next one is appended in its place.
+     * @return the orbits of every size written in full, from 2 cards up
+     * @throws IOException if the checkpoint file cannot be read or cut back, or is not a checkpoint
+     */
+    private List<List<Orbit>> readCheckpoint() throws IOException {
+        List<List<Orbit>> sizes = new ArrayList<>();
+        if (checkpoint == null || !Files.exists(checkpoint))
+            return sizes;
+
+        byte[] bytes = Files.readAllBytes(checkpoint);
+        int end = bytes.length;
+        while (end > 0 && bytes[end - 1] != '\n')
+            end--;
+        String[] lines = new String(bytes, 0, end, StandardCharsets.US_ASCII).split("\n", -1);
+
+        // every size is a line "size orbits", then a line "lo hi stabilizer" per orbit, masks in hex
+        int line = 0;
+        long complete = 0;      // the bytes of the sizes read in full
+        long offset = 0;
+        try {
+            while (line < lines.length - 1) {
+                String[] header = lines[line].trim().split("\\s+");
+                if (header.length != 2 || Integer.parseInt(header[0]) != sizes.size() + 2)
+                    throw new IOException("not a cap checkpoint: " + checkpoint);
+                int count = Integer.parseInt(header[1]);
+                if (count < 0)
+                    throw new IOException("not a cap checkpoint: " + checkpoint);
+                if (line + 1 + count > lines.length - 1)
+                    break;
+                offset += lines[line++].length() + 1;
+
+                List<Orbit> orbits = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    String[] fields = lines[line].trim().split("\\s+");
+                    long stabilizer = fields.length == 3 ? Long.parseLong(fields[2]) : 0;
+                    if (stabilizer <= 0 || BoardSymmetry.AFFINE_GROUP_ORDER % stabilizer != 0)
+                        throw new IOException("not a cap checkpoint: " + checkpoint);
+                    orbits.add(new Orbit(Long.parseUnsignedLong(fields[0], 16), Long.parseUnsignedLong(fields[1], 16),
+                            stabilizer));
+                    offset += lines[line++].length() + 1;
+                }
+                sizes.add(orbits);
+                complete = offset;
+            }
+        }
+        catch (NumberFormatException e) {
+            throw new IOException("not a cap checkpoint: " + checkpoint, e);
+        }
+
+        if (complete < bytes.length) {
+            try (FileChannel channel = FileChannel.open(checkpoint, StandardOpenOption.WRITE)) {
+                channel.truncate(complete);
+            }
+        }
+        return sizes;
+    }
+
+    /**
+     * Appends a finished size to the checkpoint file.
+     * @param size the number of cards in the caps
+     * @param orbits the orbits of caps of that size
+     * @throws IOException if the checkpoint file cannot be written
+     */
+    private void writeCheckpoint(int size, List<Orbit> orbits) throws IOException {
+        if (checkpoint == null)
+            return;
+
+        StringBuilder sb = new StringBuilder().append(size).append(' ').append(orbits.size()).append('\n');
+        for (Orbit orbit : orbits)
+            sb.append(Long.toHexString(orbit.lo)).append(' ').append(Long.toHexString(orbit.hi))
+                    .append(' ').append(orbit.stabilizer).append('\n');
+        Files.write(checkpoint, sb.toString().getBytes(StandardCharsets.US_ASCII),
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    // endregion checkpoints
+
+    // region 81-bit masks
+
+    private static boolean contains(long lo, long hi, int card) {
+        return card < 64 ? (lo >>> card & 1) != 0 : (hi >>> (card - 64) & 1) != 0;
+    }
+
+    /**
+     * @return the bit of a card within the half of the mask starting at base, or 0 if it is in the other half
+     */
+    private static long bit(int card, int base) {
+        int shift = card - base;
+        return shift >= 0 && shift < 64 ? 1L << shift : 0;
+    }
+
+    // endregion 81-bit masks
+
+    /**
+     * Prints the exact number of k-card boards with no set, and their probability, for every k up to the given size.
+     * @param args [largest size, default 12] [checkpoint file]
+     * @throws IOException if the checkpoint file cannot be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        int maxSize = args.length > 0 ? Integer.parseInt(args[0]) : 12;
+        Path checkpoint = args.length > 1 ? Paths.get(args[1]) : null;
+
+        long start = System.nanoTime();
+        long[] caps = new CapEnumerator(maxSize, checkpoint).run();
+        System.out.println(String.format("enumerated in %.1f s", (System.nanoTime() - start) / 1e9));
+
+        BigInteger boards = BigInteger.ONE;
+        for (int k = 1; k <= maxSize; k++) {
+            boards = boards.multiply(BigInteger.valueOf(82 - k)).divide(BigInteger.valueOf(k));
+            System.out.println(String.format("%2d cards: %,24d set-free of %,28d  (p = %.6g)",
+                    k, caps[k], boards, caps[k] / boards.doubleValue()));
+        }
+        if (maxSize > MAX_CAP && caps[MAX_CAP + 1] != 0)
+            System.out.println("ERROR: found a cap larger than " + MAX_CAP);
+    }
+}
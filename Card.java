@@ -10,27 +10,100 @@ public class Card {
     private Shading  shading;
     private Shape    shape;
     private Number   number;
+    private int      index;
+    private String   rendering;
 
     /**
-     * Constructor.
+     * The 81 distinct Cards, indexed by {@link #getIndex()}. These are the only Card instances that exist.
+     */
+    private static final Card[] CARDS = new Card[81];
+
+    /**
+     * One-hot encoding of every Card index: each attribute occupies three bits, exactly one of which is set.
+     * Indexed by {@link #getIndex()}.
+     */
+    private static final int[] BITS = new int[81];
+
+    /**
+     * Completion table: THIRD[i1 * 81 + i2] is the index of the only Card that forms a set with Cards i1 and i2.
+     */
+    private static final byte[] THIRD = new byte[81 * 81];
+
+    static {
+        for (int i = 0; i < 81; i++)
+            BITS[i] = (1 << (i / 27)) | (1 << (3 + i / 9 % 3)) | (1 << (6 + i / 3 % 3)) | (1 << (9 + i % 3));
+
+        for (int i1 = 0; i1 < 81; i1++) {
+            for (int i2 = 0; i2 < 81; i2++) {
+                int i3 = 0;
+                for (int place = 27; place > 0; place /= 3) {
+                    int sum = i1 / place % 3 + i2 / place % 3;
+                    i3 += (3 - sum % 3) % 3 * place;
+                }
+                THIRD[i1 * 81 + i2] = (byte) i3;
+            }
+        }
+
+        for (Color color : Color.values())
+            for (Shading shading : Shading.values())
+                for (Shape shape : Shape.values())
+                    for (Number number : Number.values()) {
+                        Card card = new Card(color, shading, shape, number);
+                        CARDS[card.index] = card;
+                    }
+    }
+
+    /**
+     * Constructor. Only used to build the table of canonical Cards; use {@link #of} to get a Card.
      * @param color the color of this Card
      * @param shading the shading of this Card
      * @param shape the shape of this Card
      * @param number the number of this Card
      */
-    public Card(Color color, Shading shading, Shape shape, Number number) {
+    private Card(Color color, Shading shading, Shape shape, Number number) {
         this.color   = color;
         this.shading = shading;
         this.shape   = shape;
         this.number  = number;
+        this.index   = color.ordinal() * 27 + shading.ordinal() * 9 + shape.ordinal() * 3 + number.ordinal();
+        this.rendering = render();
     }
 
     /**
-     * Formats the string representation of a Card.
-     * @return the representation of this Card as a String.
+     * Gets the Card with the given attributes. There is exactly one instance per Card, so Cards can be
+     * compared with ==.
+     * @param color the color of the Card
+     * @param shading the shading of the Card
+     * @param shape the shape of the Card
+     * @param number the number of the Card
+     * @return the canonical Card with those attributes
+     */
+    public static Card of(Color color, Shading shading, Shape shape, Number number) {
+        return CARDS[color.ordinal() * 27 + shading.ordinal() * 9 + shape.ordinal() * 3 + number.ordinal()];
+    }
+
+    /**
+     * Gets the Card with the given index.
+     * @param index the packed index of the Card, in the range 0..80
+     * @return the canonical Card with that index
+     */
+    public static Card of(int index) {
+        return CARDS[index];
+    }
+
+    /**
+     * @return the representation of this Card as a String, formatted once when the Card was created.
      */
     @Override
     public String toString() {
+        return rendering;
+    }
+
+    /**
+     * Formats the string representation of a Card.
+     * @return the representation of this Card as a String.
+     */
+    private String render() {
         StringBuilder sb = new StringBuilder();
 
         // add shading
@@ -107,6 +180,13 @@ public class Card {
         return shape;
     }
 
+    /**
+     * @return this Card's packed index, a base-3 number (color, shading, shape, number) in the range 0..80
+     */
+    public int getIndex() {
+        return index;
+    }
+
     // endregion getters
 
 
@@ -117,6 +197,43 @@ public class Card {
      * @return True if the three Card objects form a set, False otherwise.
      */
     public static boolean isSet(Card c1, Card c2, Card c3) {
+        return isSet(c1.index, c2.index, c3.index);
+    }
+
+    /**
+     * Branch-free set test on packed Card indices.
+     * <p>
+     * With one bit per attribute value, an attribute is "all same" or "all different" exactly when
+     * OR-ing the three cards sets the same bits as XOR-ing them; two matching values cancel out under XOR.
+     *
+     * @param i1 the index of a Card
+     * @param i2 the index of a Card
+     * @param i3 the index of a Card
+     * @return True if the three Card indices form a set, False otherwise.
+     */
+    public static boolean isSet(int i1, int i2, int i3) {
+        int b1 = BITS[i1], b2 = BITS[i2], b3 = BITS[i3];
+        return (b1 | b2 | b3) == (b1 ^ b2 ^ b3);
+    }
+
+    /**
+     * Any two Cards determine exactly one Card that completes the set.
+     * @param i1 the index of a Card
+     * @param i2 the index of a Card
+     * @return the index of the Card that forms a set with the two given Cards.
+     */
+    public static int third(int i1, int i2) {
+        return THIRD[i1 * 81 + i2];
+    }
+
+    /**
+     * Reference implementation of the set test, comparing every attribute of the three Cards.
+     * @param c1 a Card
+     * @param c2 a Card
+     * @param c3 a Card
+     * @return True if the three Card objects form a set, False otherwise.
+     */
+    static boolean isSetByAttribute(Card c1, Card c2, Card c3) {
 
         // region color
         boolean isColorMatching = ((c1.getColor() == c2.getColor())
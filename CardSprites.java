@@ -0,0 +1,231 @@
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.Node;
+import javafx.scene.Scene;
+import javafx.scene.SnapshotParameters;
+import javafx.scene.image.Image;
+import javafx.scene.layout.Pane;
+import javafx.scene.layout.VBox;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.ImagePattern;
+import javafx.scene.paint.Paint;
+import javafx.scene.shape.Line;
+import javafx.scene.shape.Polygon;
+import javafx.scene.shape.Rectangle;
+import javafx.scene.shape.SVGPath;
+import javafx.scene.transform.Transform;
+
+import java.util.Arrays;
+
+/**
+ * A cache of pre-rendered card faces, so that drawing a card is just showing an Image.
+ * <p>
+ * Each of the 81 faces is rendered the first time it is needed, at the current scale, and reused after that.
+ * There is one hatch pattern per color for the striped cards. Changing the scale (when the window is resized)
+ * drops the rendered faces so they are rendered again, crisply, at the new size.
+ * Must only be used on the JavaFX application thread.
+ */
+public class CardSprites {
+    public static final double CARD_WIDTH = 140;    // size of a card face at scale 1
+    public static final double CARD_HEIGHT = 210;
+
+    private final Image[] faces = new Image[81];
+    private final ImagePattern[] hatches = new ImagePattern[Card.Color.values().length];
+    private double scale = 1;
+
+    /**
+     * @return the scale the faces are rendered at
+     */
+    public double getScale() {
+        return scale;
+    }
+
+    /**
+     * Sets the scale the faces are rendered at, dropping every face rendered at the old scale.
+     * @param scale the new scale, 1 being CARD_WIDTH by CARD_HEIGHT
+     */
+    public void setScale(double scale) {
+        if (scale == this.scale)
+            return;
+        this.scale = scale;
+        Arrays.fill(faces, null);
+    }
+
+    /**
+     * Gets the face of a Card, rendering it if it has not been rendered at the current scale yet.
+     * @param card the Card
+     * @return the Image of the Card's shapes, on a transparent background
+     */
+    public Image getFace(Card card) {
+        Image face = faces[card.getIndex()];
+        if (face == null) {
+            face = render(card);
+            faces[card.getIndex()] = face;
+        }
+        return face;
+    }
+
+    /**
+     * Renders the face of a Card.
+     * @param card the Card
+     * @return the Image of the Card's shapes, on a transparent background
+     */
+    private Image render(Card card) {
+        // define variables
+        Color cardColor;
+        Color outlineColor;
+        Paint fillType;
+
+        VBox box = new VBox();
+        box.setSpacing(9); // sets spacing between children
+        box.setPadding(new Insets(10)); // padding between shapes and card border
+        box.setPrefSize(CARD_WIDTH, CARD_HEIGHT); // sets dimensions
+        box.setAlignment(Pos.CENTER); // forces children to be centered in the middle of the card
+        box.setStyle("-fx-background-color: transparent;");
+
+        // convert card color to javaFX color
+        switch (card.getColor()) {
+            case GREEN:     cardColor = Color.GREEN;  break;
+            case PURPLE:    cardColor = Color.PURPLE; break;
+            case RED:       cardColor = Color.RED;    break;
+            default:        cardColor = Color.TRANSPARENT;
+        }
+
+        // set shading
+        switch (card.getShading()) {
+            case SOLID:
+                fillType        = cardColor;
+                outlineColor    = cardColor;
+                break;
+            case STRIPED:
+                fillType        = getHatch(card.getColor(), cardColor);
+                outlineColor    = cardColor;
+                break;
+            case OUTLINED:
+                fillType        = Color.TRANSPARENT;
+                outlineColor    = cardColor;
+                break;
+            default:
+                fillType        = Color.BLACK;
+                outlineColor    = Color.BLACK;
+        }
+
+        // draw shape
+        Node shape;
+        for (int i = 0; i <= card.getNumber().ordinal(); i++) {
+            switch (card.getShape()) {
+                case DIAMOND:   shape = drawDiamond(outlineColor,   fillType); break;
+                case OVAL:      shape = drawEllipse(outlineColor,   fillType); break;
+                case SQUIGGLE:  shape = drawSquiggle(outlineColor,  fillType); break;
+                default:        shape = drawRectangle(outlineColor, fillType);
+            }
+            box.getChildren().add(shape);
+        }
+
+        // render at the current scale
+        new Scene(box, CARD_WIDTH, CARD_HEIGHT, Color.TRANSPARENT);
+        SnapshotParameters params = new SnapshotParameters();
+        params.setFill(Color.TRANSPARENT);
+        params.setTransform(Transform.scale(scale, scale));
+        return box.snapshot(params, null);
+    }
+
+    /**
+     * Gets the hatch pattern of a color, creating it the first time it is needed.
+     * @param color the Card's color
+     * @param hatchColor the same color, as a JavaFX Color
+     * @return the hatch pattern
+     */
+    private ImagePattern getHatch(Card.Color color, Color hatchColor) {
+        if (hatches[color.ordinal()] == null)
+            hatches[color.ordinal()] = new ImagePattern(createHatch(hatchColor), 0, 0, 17, 17, false);
+        return hatches[color.ordinal()];
+    }
+
+    /**
+     * Draw a diamond shape with the specified fill and outline.
+     * @param outlineColor the Color of the shape outline.
+     * @param fillType the type of fill of the shape.
+     * @return the drawn diamond (a Polygon).
+     */
+    private Polygon drawDiamond(Color outlineColor, Paint fillType) {
+        Polygon p = new Polygon();
+        Double[] points = new Double[] {
+                0.0, 25.0,
+                50.0, 50.0,
+                100.0, 25.0,
+                50.0, 0.0
+        };
+        p.getPoints().addAll(points);
+        p.setFill(fillType);
+        p.setStroke(outlineColor);
+        p.setStrokeWidth(3);
+
+        return p;
+    }
+
+    /**
+     * Draw an ellipse with the specified fill and outline.
+     * @param outlineColor the Color of the shape outline.
+     * @param fillType the type of fill of the shape.
+     * @return the drawn ellipse (a Rectangle).
+     */
+    private Rectangle drawEllipse(Color outlineColor, Paint fillType) {
+        Rectangle e = new Rectangle(0,0,100,50);
+        e.setArcHeight(50);
+        e.setArcWidth(40);
+        e.setFill(fillType);
+        e.setStroke(outlineColor);
+        e.setStrokeWidth(3);
+
+        return e;
+    }
+
+    /**
+     * Draw a squiggle with the specified fill and outline.
+     * @param outlineColor the Color of the shape outline.
+     * @param fillType the type of fill of the shape.
+     * @return the drawn squiggle (an SVGPath).
+     */
+    private SVGPath drawSquiggle(Color outlineColor, Paint fillType) {
+        SVGPath svg = new SVGPath();
+        svg.setContent("M 26 148 C 22 152 19 152 22 132 C 23 119 37 101 47 100 C 57 99 70 117 83 118 C 96 119 109 105 115 101 C 122 98 122 105 118 120 C 114 133 99 149 87 150 C 75 150 60 134 49 134 C 38 133 30 144 26 148 Z");
+        svg.setFill(fillType);
+        svg.setStroke(outlineColor);
+        svg.setStrokeWidth(3);
+
+        return svg;
+    }
+
+    /**
+     * Draw a rectangle with the specified fill and outline.
+     * @param outlineColor the Color of the shape outline.
+     * @param fillType the type of fill of the shape.
+     * @return the drawn rectangle (a Rectangle).
+     */
+    private Rectangle drawRectangle(Color outlineColor, Paint fillType) {
+        Rectangle r = new Rectangle(0,0,100,50);
+        r.setFill(fillType);
+        r.setStroke(outlineColor);
+        r.setStrokeWidth(3);
+
+        return r;
+    }
+
+    /**
+     * Creates a hatch pattern to use as a fill option.
+     * @param hatchColor the color to use in the hatching.
+     * @return an Image of the hatch pattern.
+     */
+    private Image createHatch(Color hatchColor) {
+        Pane pane = new Pane();
+        pane.setPrefSize(20, 20);
+        Line fw = new Line(0, 0, 25, 25);
+        fw.setRotate(0);
+        fw.setStroke(hatchColor);
+        fw.setStrokeWidth(5);
+        pane.getChildren().addAll(fw);
+        new Scene(pane);
+        return pane.snapshot(null, null);
+    }
+}
@@ -0,0 +1,306 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Distributions over streams of deals, fed by any number of threads at once: the number of sets on the opening
+ * 12-card board, the sets of the opening board by the number of attributes on which their cards differ, and the
+ * number of cards on the board when the deck runs out.
+ * <p>
+ * Every histogram bucket is its own LongAdder, so producers never take a lock and rarely contend. A snapshot() can
+ * be taken at any time without stopping them; each count in it is exact as of some moment during the snapshot,
+ * so a snapshot taken mid-run may be off by the few deals in flight. Snapshots of separate runs, possibly saved to
+ * files by separate processes, add up with merge().
+ */
+public class DealStats {
+    private final LongAdder deals = new LongAdder();
+    private final LongAdder[] openingSets = adders(23);         // 12 cards hold at most 12 * 11 / 6 sets
+    private final LongAdder[] setsByDifferences = adders(5);    // two cards of a set differ in 1 to 4 attributes
+    private final LongAdder[] cardsAtDeckOut = adders(Board.CAPACITY + 1);
+
+    /**
+     * Records the opening board of a deal.
+     * @param board the Board, as dealt from its Deck.
+     */
+    public void recordOpening(Board board) {
+        deals.increment();
+        openingSets[board.countSets()].increment();
+        for (BoardSquare[] set : board.findAllSets())
+            setsByDifferences[differences(set[0].getCard().getIndex(), set[1].getCard().getIndex())].increment();
+    }
+
+    /**
+     * Records the number of cards on the board once the deck has run out.
+     * @param cards the number of cards on the board.
+     */
+    public void recordDeckOut(int cards) {
+        cardsAtDeckOut[cards].increment();
+    }
+
+    /**
+     * Plays a batch of deals with Simulator, in parallel on the common fork-join pool, feeding every one into this
+     * aggregator.
+     * @param count the number of deals.
+     * @param policy the policy deciding which set is taken on every turn.
+     * @param seed the seed from which every task's random number generator is split; the same seed plays the same deals.
+     */
+    public void run(long count, SelectionPolicy policy, long seed) {
+        Simulator.run(count, policy, seed, new Simulator.Observer() {
+            @Override
+            public void opening(Board board) {
+                recordOpening(board);
+            }
+
+            @Override
+            public void deckOut(Board board) {
+                recordDeckOut(board.numCards());
+            }
+        });
+    }
+
+    /**
+     * @return the counts so far, read while producers keep running.
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(deals.sum(), sums(openingSets), sums(setsByDifferences), sums(cardsAtDeckOut));
+    }
+
+    /**
+     * An immutable copy of the counts of a DealStats.
+     */
+    public static final class Snapshot {
+        private final long deals;
+        private final long[] openingSets;
+        private final long[] setsByDifferences;
+        private final long[] cardsAtDeckOut;
+
+        private Snapshot(long deals, long[] openingSets, long[] setsByDifferences, long[] cardsAtDeckOut) {
+            this.deals = deals;
+            this.openingSets = openingSets;
+            this.setsByDifferences = setsByDifferences;
+            this.cardsAtDeckOut = cardsAtDeckOut;
+        }
+
+        /**
+         * Adds up two snapshots, e.g. of separate runs.
+         * @param other the Snapshot to add.
+         * @return a new Snapshot holding the counts of both.
+         */
+        public Snapshot merge(Snapshot other) {
+            return new Snapshot(deals + other.deals, add(openingSets, other.openingSets),
+                    add(setsByDifferences, other.setsByDifferences), add(cardsAtDeckOut, other.cardsAtDeckOut));
+        }
+
+        // region getters
+
+        /**
+         * @return the number of deals recorded.
+         */
+        public long getDeals() {
+            return deals;
+        }
+
+        /**
+         * @return a histogram of the number of sets on the opening board, indexed by number of sets.
+         */
+        public long[] getOpeningSets() {
+            return openingSets.clone();
+        }
+
+        /**
+         * @return a histogram of the sets on the opening board, indexed by the number of attributes on which
+         *         their cards differ, 1 to 4.
+         */
+        public long[] getSetsByDifferences() {
+            return setsByDifferences.clone();
+        }
+
+        /**
+         * @return a histogram of the number of cards on the board when the deck runs out.
+         */
+        public long[] getCardsAtDeckOut() {
+            return cardsAtDeckOut.clone();
+        }
+
+        // endregion getters
+
+        // region files
+
+        /**
+         * Writes the counts as text, one histogram per line.
+         * @param file the file to write.
+         * @throws IOException if the file cannot be written.
+         */
+        public void save(Path file) throws IOException {
+            List<String> lines = new ArrayList<>();
+            lines.add("deals " + deals);
+            lines.add("opening-sets " + join(openingSets));
+            lines.add("sets-by-differences " + join(setsByDifferences));
+            lines.add("cards-at-deck-out " + join(cardsAtDeckOut));
+            Files.write(file, lines);
+        }
+
+        /**
+         * Reads counts written by save().
+         * @param file the file to read.
+         * @return the Snapshot.
+         * @throws IOException if the file cannot be read or was not written by save().
+         */
+        public static Snapshot load(Path file) throws IOException {
+            List<String> lines = Files.readAllLines(file);
+            if (lines.size() != 4)
+                throw new IOException("not a deal statistics file: " + file);
+            return new Snapshot(split(lines.get(0), "deals", 1)[0], split(lines.get(1), "opening-sets", 23),
+                    split(lines.get(2), "sets-by-differences", 5), split(lines.get(3), "cards-at-deck-out", Board.CAPACITY + 1));
+        }
+
+        private static String join(long[] counts) {
+            StringBuilder sb = new StringBuilder();
+            for (long count : counts)
+                sb.append(sb.length() == 0 ? "" : " ").append(count);
+            return sb.toString();
+        }
+
+        private static long[] split(String line, String name, int length) throws IOException {
+            String[] fields = line.trim().split("\\s+");
+            if (!fields[0].equals(name) || fields.length != length + 1)
+                throw new IOException(String.format("expected %d counts of %s: %s", length, name, line));
+            long[] counts = new long[length];
+            try {
+                for (int i = 0; i < length; i++)
+                    counts[i] = Long.parseLong(fields[i + 1]);
+            }
+            catch (NumberFormatException e) {
+                throw new IOException("bad count: " + line, e);
+            }
+            return counts;
+        }
+
+        // endregion files
+
+        /**
+         * @return a String representation of this Snapshot
+         */
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+
+            sb.append(String.format("deals:               %d%n", deals));
+            sb.append("opening sets:       ");
+            appendHistogram(sb, openingSets);
+            sb.append("differences:        ");
+            appendHistogram(sb, setsByDifferences);
+            sb.append("cards at deck out:  ");
+            appendHistogram(sb, cardsAtDeckOut);
+
+            return sb.toString();
+        }
+
+        /**
+         * Appends the non-empty buckets of a histogram as "bucket:fraction" pairs.
+         * @param sb the StringBuilder to append to.
+         * @param histogram the histogram to append.
+         */
+        private static void appendHistogram(StringBuilder sb, long[] histogram) {
+            long total = 0;
+            for (long count : histogram)
+                total += count;
+
+            for (int i = 0; i < histogram.length; i++)
+                if (histogram[i] > 0)
+                    sb.append(String.format(" %d:%.4f", i, (double) histogram[i] / total));
+            sb.append(String.format("%n"));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Snapshot))
+                return false;
+            Snapshot other = (Snapshot) o;
+            return deals == other.deals && Arrays.equals(openingSets, other.openingSets)
+                    && Arrays.equals(setsByDifferences, other.setsByDifferences)
+                    && Arrays.equals(cardsAtDeckOut, other.cardsAtDeckOut);
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(deals) * 31 + Arrays.hashCode(openingSets);
+        }
+
+        private static long[] add(long[] a, long[] b) {
+            long[] sum = new long[a.length];
+            for (int i = 0; i < sum.length; i++)
+                sum[i] = a[i] + b[i];
+            return sum;
+        }
+    }
+
+    /**
+     * @return the number of attributes on which two cards differ, from their indices
+     */
+    static int differences(int i1, int i2) {
+        int count = 0;
+        for (int attribute = 0; attribute < 4; attribute++, i1 /= 3, i2 /= 3)
+            if (i1 % 3 != i2 % 3)
+                count++;
+        return count;
+    }
+
+    private static LongAdder[] adders(int length) {
+        LongAdder[] adders = new LongAdder[length];
+        for (int i = 0; i < length; i++)
+            adders[i] = new LongAdder();
+        return adders;
+    }
+
+    private static long[] sums(LongAdder[] adders) {
+        long[] sums = new long[adders.length];
+        for (int i = 0; i < sums.length; i++)
+            sums[i] = adders[i].sum();
+        return sums;
+    }
+
+    /**
+     * Plays deals from the command line, printing a snapshot every second while they are played.
+     * If the statistics file already exists, its counts are added to this run's before it is rewritten.
+     * @param args [number of deals] [first|random] [seed] [statistics file]
+     * @throws IOException if the statistics file cannot be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        long count = args.length > 0 ? Long.parseLong(args[0]) : 10_000_000;
+        SelectionPolicy policy = args.length > 1 && args[1].equalsIgnoreCase("random")
+                ? SelectionPolicy.RANDOM
+                : SelectionPolicy.FIRST;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : System.nanoTime();
+        Path file = args.length > 3 ? Paths.get(args[3]) : null;
+
+        DealStats stats = new DealStats();
+        long start = System.nanoTime();
+        CompletableFuture<Void> done = CompletableFuture.runAsync(() -> stats.run(count, policy, seed));
+        while (!done.isDone()) {
+            try {
+                Thread.sleep(1000);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            long deals = stats.snapshot().getDeals();
+            System.out.println(String.format("%,d deals, %,.0f deals/s", deals, deals / ((System.nanoTime() - start) / 1e9)));
+        }
+        done.join();
+
+        Snapshot result = stats.snapshot();
+        if (file != null && Files.exists(file))
+            result = result.merge(Snapshot.load(file));
+        System.out.print(result);
+        if (file != null)
+            result.save(file);
+    }
+}
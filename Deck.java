@@ -1,19 +1,45 @@
-import java.util.ArrayList;
-import java.util.Random;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.SplittableRandom;
 
 public class Deck {
-    private ArrayList<Card> deck;
+    private Card[] deck;
+    private int remaining;
+    private SplittableRandom random;
+    private boolean lazy;
+    private int[] picks;    // a lazy Deck's random picks once it has been written: picks[r - 1] is taken with r left
 
     /**
      * Constructor
      */
     public Deck() {
-        deck = new ArrayList<>(81);
-        for (Card.Color color : Card.Color.values())
-            for (Card.Shading shading : Card.Shading.values())
-                for (Card.Shape shape : Card.Shape.values())
-                    for (Card.Number number : Card.Number.values())
-                        deck.add(new Card(color, shading, shape, number));
+        this(new SplittableRandom(), false);
+    }
+
+    /**
+     * Constructor for a Deck whose order is reproducible.
+     * @param seed the seed of the random number generator used to shuffle this Deck
+     */
+    public Deck(long seed) {
+        this(new SplittableRandom(seed), false);
+    }
+
+    /**
+     * Constructor.
+     * <p>
+     * A lazy Deck does not shuffle up front: each call to getTopCard() picks one of the remaining Cards at random
+     * instead. Both modes perform the same Fisher-Yates swaps in the same order, so a lazy and an eager Deck
+     * built from identically seeded generators deal exactly the same Cards.
+     * @param random the random number generator used to shuffle this Deck, owned by this Deck from now on
+     * @param lazy whether Cards are picked when dealt (true) or the whole Deck is shuffled now (false)
+     */
+    public Deck(SplittableRandom random, boolean lazy) {
+        this.random = random;
+        this.lazy = lazy;
+
+        deck = new Card[81];
+        for (int index = 0; index < 81; index++)
+            deck[remaining++] = Card.of(index);
 
         this.shuffle();
     }
@@ -23,14 +49,14 @@ public class Deck {
      * @return true if there are no more Cards in this Deck, false otherwise.
      */
     public boolean isEmpty() {
-        return (deck.size() == 0);
+        return (remaining == 0);
     }
 
     /**
      * @return the number of Cards left in this Deck.
      */
     public int cardsRemaining() {
-        return deck.size();
+        return remaining;
     }
 
     /**
@@ -38,24 +64,100 @@ public class Deck {
      * @return the reference to the topmost Card.
      */
     public Card getTopCard() {
-        return deck.remove(deck.size() - 1);
+        if (lazy)
+            swap(remaining - 1, pick(remaining));
+        return deck[--remaining];
     }
 
     /**
-     * Shuffle the Cards in this Deck.
+     * Shuffle the Cards in this Deck with an unbiased Fisher-Yates shuffle.
+     * A lazy Deck picks its Cards at random as they are dealt, so there is nothing to do up front.
      */
     public void shuffle() {
-        int randNum;
-        Card temp;
-        Random r = new Random();
-        for (int i = 0; i < deck.size(); i++) {
-            randNum = r.nextInt(deck.size());
-            temp = deck.get(i);
-            deck.set(i,deck.get(randNum));
-            deck.set(randNum,temp);
+        if (lazy)
+            return;
+        for (int i = remaining - 1; i > 0; i--)
+            swap(i, random.nextInt(i + 1));
+    }
+
+    /**
+     * @param left the number of Cards left in this lazy Deck
+     * @return the position of the Card to deal next, from 0 to left - 1
+     */
+    private int pick(int left) {
+        return picks != null ? picks[left - 1] : random.nextInt(left);
+    }
+
+    /**
+     * Writes the remaining Cards in the order they will be dealt, one byte per Card index, preceded by their count.
+     * <p>
+     * Writing does not change what this Deck deals. A lazy Deck works out its order on a copy of its Cards; the
+     * random picks that takes are drawn once from its own generator and kept, so it goes on to make the same picks
+     * when it deals.
+     * @param buf the buffer to write to
+     */
+    void writeTo(ByteBuffer buf) {
+        buf.put((byte) remaining);
+        if (!lazy) {
+            for (int i = remaining - 1; i >= 0; i--)
+                buf.put((byte) deck[i].getIndex());
+            return;
+        }
+
+        if (picks == null) {
+            picks = new int[remaining];
+            for (int left = remaining; left > 0; left--)
+                picks[left - 1] = random.nextInt(left);
+        }
+        Card[] order = Arrays.copyOf(deck, remaining);
+        for (int left = remaining; left > 0; left--) {
+            int j = pick(left);
+            Card temp = order[left - 1];
+            order[left - 1] = order[j];
+            order[j] = temp;
+            buf.put((byte) order[left - 1].getIndex());
         }
     }
 
+    /**
+     * Reads Cards written by writeTo(), without changing any Deck.
+     * @param buf the buffer to read from
+     * @return the Card indices in the order they will be dealt; they are not checked against the Card range
+     * @throws IllegalArgumentException if the count is out of range
+     */
+    static int[] readCards(ByteBuffer buf) {
+        int count = buf.get() & 0xFF;
+        if (count > 81)
+            throw new IllegalArgumentException(String.format("a Deck cannot hold %d Cards", count));
+        int[] cards = new int[count];
+        for (int i = 0; i < count; i++)
+            cards[i] = buf.get() & 0xFF;
+        return cards;
+    }
+
+    /**
+     * Replaces the contents of this Deck with Cards read by readCards(). The Deck deals them in that order.
+     * @param cards valid, distinct Card indices
+     */
+    void restore(int[] cards) {
+        lazy = false;
+        picks = null;
+        remaining = cards.length;
+        for (int i = 0; i < cards.length; i++)
+            deck[remaining - 1 - i] = Card.of(cards[i]);
+    }
+
+    /**
+     * Swaps two Cards in this Deck.
+     * @param i the position of a Card
+     * @param j the position of a Card
+     */
+    private void swap(int i, int j) {
+        Card temp = deck[i];
+        deck[i] = deck[j];
+        deck[j] = temp;
+    }
+
     /**
      * @return a string representation of this Deck.
      */
@@ -63,9 +165,9 @@ public class Deck {
     public String toString() {
         StringBuilder sb = new StringBuilder();
         sb.append("[\n");
-        for (Card c : deck) {
+        for (int i = 0; i < remaining; i++) {
             sb.append("\t");
-            sb.append(c.toString());
+            sb.append(deck[i].toString());
             sb.append(",\n");
         }
         sb.append("]");
@@ -0,0 +1,171 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Solves the endgame: once the deck is empty, finds the order of sets that takes as many of the remaining cards
+ * as possible, ideally all of them.
+ * <p>
+ * No card comes in once the deck is empty, so the sets taken are just disjoint sets of the board, in any order:
+ * the most cards are taken by a largest packing of disjoint sets. The search branches on the lowest remaining card,
+ * which is either taken with one of the sets through it or never taken at all, so every packing is reached once
+ * rather than in every order, and it stops as soon as a position is known to clear all but at most two cards.
+ * <p>
+ * The remaining cards are an 81-bit mask held in two longs, and the result of every position is memoized in a
+ * fixed-size transposition table, allocated up front. When two positions hash to the same slot the newer one
+ * replaces the older, so memory stays bounded however large the search gets.
+ */
+public class EndgameSolver {
+    private static final int DROP = -1;     // the best move leaves the lowest card on the board for good
+
+    private final long[] keysLo;
+    private final long[] keysHi;
+    private final byte[] values;    // the most sets that can still be taken from the position
+    private final int[] moves;      // the best set to take next, as three Card indices packed 8 bits apiece, or DROP
+    private final int mask;
+
+    /**
+     * Constructor.
+     * @param tableBits the base-2 logarithm of the number of positions the transposition table holds
+     */
+    public EndgameSolver(int tableBits) {
+        int size = 1 << tableBits;
+        keysLo = new long[size];
+        keysHi = new long[size];
+        values = new byte[size];
+        moves = new int[size];
+        mask = size - 1;
+
+        // no real position has both halves all ones, so that marks an empty slot
+        Arrays.fill(keysHi, -1L);
+    }
+
+    /**
+     * Constructor, with a table of 2^16 positions.
+     */
+    public EndgameSolver() {
+        this(16);
+    }
+
+    /**
+     * Finds the longest sequence of sets that can be taken from a Board, in the order to take them.
+     * @param board the Board, whose BoardSquares keep holding the same Cards as sets are taken
+     * @return the sets to take, in order, as BoardSquare triples
+     */
+    public ArrayList<BoardSquare[]> solve(Board board) {
+        long lo = 0, hi = 0;
+        for (int row = 0; row < board.numRows(); row++) {
+            for (int col = 0; col < board.numCols(); col++) {
+                int index = board.getBoardSquare(row, col).getCard().getIndex();
+                if (index < 64)
+                    lo |= 1L << index;
+                else
+                    hi |= 1L << (index - 64);
+            }
+        }
+
+        ArrayList<BoardSquare[]> sequence = new ArrayList<>();
+        while (best(lo, hi) > 0) {
+            int move = moves[slot(lo, hi)];
+            if (move == DROP) {
+                if (lo != 0)
+                    lo &= lo - 1;
+                else
+                    hi &= hi - 1;
+                continue;
+            }
+            BoardSquare[] set = new BoardSquare[3];
+            for (int i = 0; i < 3; i++) {
+                int index = move >>> (8 * i) & 0xFF;
+                set[i] = board.getBoardSquare(Card.of(index));
+                if (index < 64)
+                    lo &= ~(1L << index);
+                else
+                    hi &= ~(1L << (index - 64));
+            }
+            sequence.add(set);
+        }
+        return sequence;
+    }
+
+    /**
+     * @param board a Board
+     * @return whether or not every card on the Board can be taken as part of a set
+     */
+    public boolean canClear(Board board) {
+        return solve(board).size() * 3 == board.numCards();
+    }
+
+    /**
+     * Computes the most sets that can be taken from a position, leaving the best move in the table.
+     * @param lo the cards with indices 0..63
+     * @param hi the cards with indices 64..80
+     * @return the most sets that can be taken
+     */
+    private int best(long lo, long hi) {
+        if ((lo | hi) == 0)
+            return 0;
+        int slot = slot(lo, hi);
+        if (keysLo[slot] == lo && keysHi[slot] == hi)
+            return values[slot];
+
+        int cards = Long.bitCount(lo) + Long.bitCount(hi);
+        int bestValue = 0;
+        int bestMove = DROP;
+
+        // the lowest card is taken with two higher ones, each set through it tried once, from its middle card
+        int i;
+        long restLo = lo, restHi = hi;
+        if (lo != 0) { i = Long.numberOfTrailingZeros(lo); restLo &= lo - 1; }
+        else         { i = 64 + Long.numberOfTrailingZeros(hi); restHi &= hi - 1; }
+
+        // nothing beats taking every possible set
+        for (long c = restLo, d = restHi; (c | d) != 0 && bestValue < cards / 3; ) {
+            int j;
+            if (c != 0) { j = Long.numberOfTrailingZeros(c); c &= c - 1; }
+            else        { j = 64 + Long.numberOfTrailingZeros(d); d &= d - 1; }
+
+            int k = Card.third(i, j);
+            if (k < j || !contains(lo, hi, k))
+                continue;
+
+            int value = 1 + best(restLo & ~bit(j, 0) & ~bit(k, 0), restHi & ~bit(j, 64) & ~bit(k, 64));
+            if (value > bestValue) {
+                bestValue = value;
+                bestMove = i | j << 8 | k << 16;
+            }
+        }
+
+        // or it is never taken, which can only win if the others can still be cleared better
+        if (bestValue < (cards - 1) / 3) {
+            int value = best(restLo, restHi);
+            if (value > bestValue) {
+                bestValue = value;
+                bestMove = DROP;
+            }
+        }
+
+        // the recursion may have reused the slot, so claim it again
+        keysLo[slot] = lo;
+        keysHi[slot] = hi;
+        values[slot] = (byte) bestValue;
+        moves[slot] = bestMove;
+        return bestValue;
+    }
+
+    private static boolean contains(long lo, long hi, int index) {
+        return index < 64 ? (lo >>> index & 1) != 0 : (hi >>> (index - 64) & 1) != 0;
+    }
+
+    /**
+     * @return the bit of a Card index within the half of the mask starting at base, or 0 if it is in the other half
+     */
+    private static long bit(int index, int base) {
+        int shift = index - base;
+        return shift >= 0 && shift < 64 ? 1L << shift : 0;
+    }
+
+    private int slot(long lo, long hi) {
+        long h = (lo * 0x9E3779B97F4A7C15L) ^ (hi * 0xC2B2AE3D27D4EB4FL);
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
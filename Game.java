@@ -1,17 +1,51 @@
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.SplittableRandom;
 
 public class Game {
+    // version of the format written by writeTo()
+    private static final byte FORMAT_VERSION = 1;
+
     // instance variables
     private Deck deck;
     private Board board;
     private ArrayList<BoardSquare> selectedCards;
+    private GameJournal journal;
 
     /**
      * Constructor
      */
     public Game() {
-        this.deck = new Deck();
-        deck.shuffle();
+        this(new SplittableRandom());
+    }
+
+    /**
+     * Constructor for a Game whose deal is reproducible.
+     *
+     * @param seed the seed used to shuffle the Game's Deck.
+     */
+    public Game(long seed) {
+        this(new SplittableRandom(seed));
+    }
+
+    /**
+     * Constructor for a Game dealt from the given random number generator, e.g. one split off per thread.
+     * The Deck picks each card only as it is dealt, so a game that ends early never shuffles the whole Deck.
+     *
+     * @param random the random number generator the Game's Deck is dealt from.
+     */
+    public Game(SplittableRandom random) {
+        this(new Deck(random, true));
+    }
+
+    /**
+     * Constructor
+     *
+     * @param deck the Deck to deal the Game from.
+     */
+    private Game(Deck deck) {
+        this.deck = deck;
         this.board = new Board(deck);
         this.selectedCards = new ArrayList<>(3);
     }
@@ -27,19 +61,32 @@ public class Game {
      * call the Board's add3 method using the Game's Deck.
      */
     public void add3() {
+        GameMetrics.OperationEvent call = GameMetrics.ENABLED ? GameMetrics.ADD3.begin() : null;
         board.add3(deck);
+        if (GameMetrics.ENABLED) GameMetrics.ADD3.end(call);
+
+        if (journal != null)
+            journal.append(GameJournal.ADD3, 0, 0, 0, deck.cardsRemaining());
     }
 
     /**
-     * Adds a Card object to the ArrayList of selected Cards.
+     * Adds a Card object to the ArrayList of selected Cards. A Card that is already selected is left as it is, so
+     * that the same Card can never be counted twice towards a set.
      *
      * @param row the row that the Card is located in.
      * @param col the column that the Card is located in.
+     * @return whether or not the Card was added, i.e. was not already selected.
      */
-    public void addToSelected(int row, int col) {
+    public boolean addToSelected(int row, int col) {
         BoardSquare bs = board.getBoardSquare(row, col);
+        if (bs.isCurrentlySelected() || selectedCards.contains(bs))
+            return false;
         bs.setCurrentlySelected(true);
         selectedCards.add(bs);
+
+        if (journal != null)
+            journal.append(GameJournal.SELECT, row, col, 0, deck.cardsRemaining());
+        return true;
     }
 
     /**
@@ -61,6 +108,9 @@ public class Game {
         BoardSquare bs = board.getBoardSquare(row, col);
         selectedCards.remove(bs);
         bs.setCurrentlySelected(false);
+
+        if (journal != null)
+            journal.append(GameJournal.DESELECT, row, col, 0, deck.cardsRemaining());
     }
 
     /**
@@ -74,12 +124,7 @@ public class Game {
      * @return the number of cards on the board.
      */
     public int numCardsOnBoard() {
-        int num = 0;
-        for (int r = 0; r < board.numRows(); r++)
-            for (int c = 0; c < board.numCols(); c++)
-                num++;
-
-        return num;
+        return board.numCards();
     }
 
     /**
@@ -91,6 +136,8 @@ public class Game {
      * @return whether or not the three cards in selectedCards are a set.
      */
     public boolean testSelected() {
+        GameMetrics.OperationEvent call = GameMetrics.ENABLED ? GameMetrics.TEST_SELECTED.begin() : null;
+
         // test if set
         boolean set = Card.isSet(
                 selectedCards.get(0).getCard(),
@@ -110,7 +157,7 @@ public class Game {
             }
             else if (!deck.isEmpty() && this.numCardsOnBoard() < 12) {
                 board.compressBoard(selectedCards);
-                this.add3();
+                board.add3(deck);
             }
             else {
                 board.compressBoard(selectedCards);
@@ -120,6 +167,14 @@ public class Game {
         // clear ArrayList
         selectedCards.clear();
 
+        if (GameMetrics.ENABLED) {
+            GameMetrics.recordSubmission(set);
+            GameMetrics.TEST_SELECTED.end(call);
+        }
+
+        if (journal != null)
+            journal.append(GameJournal.TEST, 0, 0, set ? 1 : 0, deck.cardsRemaining());
+
         // return bool
         return set;
     }
@@ -133,41 +188,43 @@ public class Game {
 
     /**
      * Finds the first available set on the board.
+     * <p>
+     * The Board keeps an index of its sets up to date as cards come and go, so this does not rescan the board.
      *
      * @return an Array of three Cards that form a set.
      */
     public BoardSquare[] findSet() {
-        ArrayList<BoardSquare> allCards = new ArrayList<>(12);
-
-        // flatten BoardSquares into one-dimensional array
-        for (int row = 0; row < board.numRows(); row++)
-            for (int col = 0; col < board.numCols(); col++)
-                allCards.add(board.getBoardSquare(row, col));
-
-        // loop through every single unique card combination
-        for (int i1 = 0; i1 < allCards.size(); i1++) {
-            for (int i2 = 1; i2 < allCards.size(); i2++) {
-                for (int i3 = 2; i3 < allCards.size(); i3++) {
-                    if (i1 != i2 && i2 != i3 && i1 != i3) {
-                        BoardSquare bs1 = allCards.get(i1);
-                        BoardSquare bs2 = allCards.get(i2);
-                        BoardSquare bs3 = allCards.get(i3);
-
-                        boolean set = Card.isSet(
-                                bs1.getCard(),
-                                bs2.getCard(),
-                                bs3.getCard()
-                        );
-
-                        if (set)
-                            return new BoardSquare[] {bs1, bs2, bs3};
-                    }
-                }
-            }
-        }
+        GameMetrics.OperationEvent call = GameMetrics.ENABLED ? GameMetrics.FIND_SET.begin() : null;
+        BoardSquare[] set = board.findSet();
+        if (GameMetrics.ENABLED) GameMetrics.FIND_SET.end(call);
+        return set;
+    }
+
+    /**
+     * Pass-through method for Board.findAllSets().
+     *
+     * @return every set on the board.
+     */
+    public ArrayList<BoardSquare[]> findAllSets() {
+        return board.findAllSets();
+    }
 
-        // if no set found, return empty Array
-        return new BoardSquare[] {};
+    /**
+     * Pass-through method for Board.countSets().
+     *
+     * @return the number of sets on the board.
+     */
+    public int countSets() {
+        return board.countSets();
+    }
+
+    /**
+     * Pass-through method for Board.hasSet().
+     *
+     * @return whether or not there is a set on the board.
+     */
+    public boolean hasSet() {
+        return board.hasSet();
     }
 
     /**
@@ -177,6 +234,98 @@ public class Game {
         return board;
     }
 
+    /**
+     * Starts recording every action taken in this Game, beginning with a DEAL event holding its current state.
+     *
+     * @param journal the journal to append to, or null to stop recording.
+     */
+    public void setJournal(GameJournal journal) {
+        this.journal = journal;
+        if (journal != null)
+            journal.deal(this);
+    }
+
+    /**
+     * Writes the full state of this Game in a compact binary format: a version byte, then the deck in dealing
+     * order, then the board slot by slot with its selection flags, then the selected cards by slot.
+     * Every card is one byte, so a whole game fits in well under 128 bytes.
+     *
+     * @param buf the buffer to write to.
+     */
+    public void writeTo(ByteBuffer buf) {
+        buf.put(FORMAT_VERSION);
+        deck.writeTo(buf);
+        board.writeTo(buf);
+
+        buf.put((byte) selectedCards.size());
+        for (BoardSquare bs : selectedCards)
+            buf.put((byte) board.slotOf(bs));
+    }
+
+    /**
+     * Replaces the state of this Game with one written by writeTo(). The restored Game deals the same cards,
+     * in the same order, as the Game that was saved.
+     * <p>
+     * The whole state is read and checked before anything is replaced, so a Game is left untouched by a buffer
+     * it cannot read, e.g. one that came from another process. A Game with a journal records the restored state
+     * as a new DEAL, so that replay picks up from it.
+     *
+     * @param buf the buffer to read from.
+     * @throws IllegalArgumentException if the buffer holds a format version this Game cannot read, is cut short,
+     *         or does not hold a valid game: a card out of range or dealt twice, or a selection that does not match
+     *         the board.
+     */
+    public void readFrom(ByteBuffer buf) {
+        int[] deckCards;
+        int[] boardCards;
+        int selected;
+        int[] selectedSlots;
+        try {
+            byte version = buf.get();
+            if (version != FORMAT_VERSION)
+                throw new IllegalArgumentException(String.format("unsupported save format version: %d", version));
+
+            deckCards = Deck.readCards(buf);
+            boardCards = Board.readCards(buf);
+            selected = Board.readSelection(buf, boardCards.length);
+            selectedSlots = new int[buf.get() & 0xFF];
+            if (selectedSlots.length > 3)
+                throw new IllegalArgumentException(String.format("%d cards selected", selectedSlots.length));
+            for (int i = 0; i < selectedSlots.length; i++)
+                selectedSlots[i] = buf.get() & 0xFF;
+        }
+        catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("save is cut short", e);
+        }
+
+        boolean[] dealt = new boolean[81];
+        for (int[] cards : new int[][] {deckCards, boardCards}) {
+            for (int index : cards) {
+                if (index >= 81)
+                    throw new IllegalArgumentException(String.format("no card with index %d", index));
+                if (dealt[index])
+                    throw new IllegalArgumentException(String.format("card %d appears twice", index));
+                dealt[index] = true;
+            }
+        }
+        int listed = 0;
+        for (int slot : selectedSlots) {
+            if (slot >= boardCards.length || (listed & 1 << slot) != 0)
+                throw new IllegalArgumentException(String.format("bad selected slot: %d", slot));
+            listed |= 1 << slot;
+        }
+        if (listed != selected)
+            throw new IllegalArgumentException("selected cards do not match the board's selection flags");
+
+        deck.restore(deckCards);
+        board.restore(boardCards, selected);
+        selectedCards.clear();
+        for (int slot : selectedSlots)
+            selectedCards.add(board.getBoardSquare(slot));
+        if (journal != null)
+            journal.deal(this);
+    }
+
     /**
      * @return a string representation of this Game.
      */
@@ -16,6 +16,9 @@ import javafx.scene.text.TextAlignment;
 import javafx.scene.text.TextFlow;
 import javafx.stage.Stage;
 
+import java.io.IOException;
+import java.nio.file.Paths;
+
 public class GameGUI extends Application {
     private Game game;
 
@@ -31,16 +34,29 @@ public class GameGUI extends Application {
     private Label cardsRemaining;
     private Label statusMessage;
 
+    private GameJournal journal;         // records every action when started with --journal=<file>
+    private CardSprites sprites;         // pre-rendered card faces, shared by every CardPane
+    private CardPane[] panes = new CardPane[Board.CAPACITY];    // the CardPane showing each Board slot
+    private int shownCols;               // the number of columns currently in the GridPane
+    private BoardCanvas canvas;          // draws the board instead of the GridPane when started with --renderer=canvas
+    private BoardAnalyzer analyzer = new BoardAnalyzer(2, Platform::runLater);   // finds hints off the FX thread
+
     private boolean debug = false;       //##### SET TO TRUE TO ENABLE DEBUGGING TO CONSOLE #######//
 
     /**
      * Handles the setup of the Game of Set, including initialization of user interface.
      */
     @Override
-    public void start(Stage primaryStage) {
+    public void start(Stage primaryStage) throws IOException {
         // new game
         game = new Game();
 
+        String journalFile = getParameters().getNamed().get("journal");
+        if (journalFile != null) {
+            journal = new GameJournal(Paths.get(journalFile));
+            game.setJournal(journal);
+        }
+
         this.stage = primaryStage;
         stage.setTitle("Game of Set");     // window title
 
@@ -124,10 +140,22 @@ public class GameGUI extends Application {
         grid.setHgap(5); // padding between grid columns
         grid.setVgap(5); // padding between grid rows
         grid.setPadding(new Insets(10)); // padding around entire grid
+
+        sprites = new CardSprites();
+        Region boardArea = grid;
+        if ("canvas".equals(getParameters().getNamed().get("renderer"))) {
+            canvas = new BoardCanvas(sprites);
+            canvas.setOnMouseClicked(this::handleClickCanvas);
+            boardArea = canvas;
+        }
+
+        // re-render the card faces to fit when the window is resized
+        boardArea.widthProperty().addListener((obs, oldWidth, newWidth) -> this.rescaleCards());
+        boardArea.heightProperty().addListener((obs, oldHeight, newHeight) -> this.rescaleCards());
         //endregion
 
         // arrange window
-        mainLayout.setCenter(grid);
+        mainLayout.setCenter(boardArea);
         mainLayout.setTop(statusPane);
         mainLayout.setBottom(menuPane);
 
@@ -142,6 +170,16 @@ public class GameGUI extends Application {
         stage.setMinHeight(stage.getHeight());
     }
 
+    /**
+     * Flushes the journal, if any, when the application exits.
+     */
+    @Override
+    public void stop() throws IOException {
+        analyzer.close();
+        if (journal != null)
+            journal.close();
+    }
+
     /**
      * Launches the game
      *
@@ -152,30 +190,82 @@ public class GameGUI extends Application {
     }
 
     /**
-     * A method that repopulates the GridPane to reflect when the underlying Board has changed.
-     * Also re-sizes the window (the Stage) to reflect the new, larger (or smaller) game area.
+     * Picks the largest card scale, in steps of 5%, at which the current board fits in the board area,
+     * and re-renders the cards if it changed.
+     */
+    private void rescaleCards() {
+        int cols = game.getBoard().numCols();
+        if (cols == 0)
+            return;
+
+        // the GridPane and the BoardCanvas use the same gaps, padding and borders
+        Region boardArea = canvas != null ? canvas : grid;
+        double border = 2 * BoardCanvas.BORDER;
+        double w = boardArea.getWidth() - 2 * BoardCanvas.PADDING - BoardCanvas.GAP * (cols - 1);
+        double h = boardArea.getHeight() - 2 * BoardCanvas.PADDING - BoardCanvas.GAP * 2;
+        double fit = Math.min((w / cols - border) / CardSprites.CARD_WIDTH, (h / 3 - border) / CardSprites.CARD_HEIGHT);
+        double scale = Math.max(0.5, Math.min(3, Math.floor(fit * 20 + 1e-6) / 20));
+
+        if (scale != sprites.getScale()) {
+            sprites.setScale(scale);
+            if (canvas != null) {
+                canvas.requestLayout();
+                canvas.redraw();
+            }
+            else {
+                for (Node n : grid.getChildren())
+                    ((CardPane) n).rescale();
+            }
+        }
+    }
+
+    /**
+     * A method that updates the GridPane to reflect when the underlying Board has changed.
+     * Each Board slot keeps its CardPane, so only the CardPanes whose BoardSquare, Card or selection changed are
+     * touched, and CardPanes are only added or removed when the number of columns changes.
+     * Also re-sizes the window (the Stage) when the game area grew (or shrank) by a column.
      */
     private void drawBoard() {
         if (debug) System.out.println("redrawing board...");
 
-        // erase board
-        grid.getChildren().clear();
         statusMessage.setText("");
 
+        // any hint still being computed is for the old board
+        analyzer.cancelAll();
 
-        // populate board
+        // update the slots still on the board, adding CardPanes for new slots
         Board b = game.getBoard();
-        for (int r = 0; r < b.numRows(); r++) {
-            for (int c = 0; c < b.numCols(); c++) {
-                Pane cp = new CardPane(b.getBoardSquare(r, c));
+        int cards = canvas != null ? 0 : b.numCards();
+        if (canvas != null)
+            canvas.update(b);
+        for (int slot = 0; slot < cards; slot++) {
+            BoardSquare bs = b.getBoardSquare(slot);
+            CardPane cp = panes[slot];
+            if (cp == null) {
+                cp = new CardPane(bs, sprites);
                 cp.setOnMouseClicked(this::handleSelectCardPane);
-                grid.add(cp, c, r);
+                grid.add(cp, bs.getColPos(), bs.getRowPos());
+                panes[slot] = cp;
             }
+            else {
+                if (cp.getBoardSquare() != bs)
+                    cp.setBoardSquare(bs);
+                cp.refresh();
+            }
+        }
+
+        // remove the CardPanes of slots no longer on the board
+        for (int slot = cards; slot < panes.length && panes[slot] != null; slot++) {
+            grid.getChildren().remove(panes[slot]);
+            panes[slot] = null;
         }
 
         // resize window
-        if (b.numCols() >= 4) // prevents scene from getting messed up when shrinking window past minimum width/height
-            stage.sizeToScene();
+        if (b.numCols() != shownCols) {
+            if (b.numCols() >= 4 && shownCols != 0) // prevents scene from getting messed up when shrinking window past minimum width/height
+                stage.sizeToScene();
+            shownCols = b.numCols();
+        }
     }
 
     //region event handlers
@@ -202,6 +292,7 @@ public class GameGUI extends Application {
         if (debug) System.out.println("starting new game!");
 
         game = new Game();
+        game.setJournal(journal);
         this.drawBoard();
         cardsRemaining.setText(String.format("Cards remaining: %d", game.cardsRemaining()));
         statusMessage.setText("");
@@ -217,28 +308,32 @@ public class GameGUI extends Application {
     private void handleFindSet(ActionEvent e) {
         if (debug) System.out.println("finding a set!");
 
-        BoardSquare[] set = game.findSet();
+        // search a snapshot of the board in the background; the result is dropped if the board changes first
+        statusMessage.setText("Looking for a set...");
+        analyzer.submit(game.getBoard(), Hint::new, this::showHint);
+    }
 
+    /**
+     * Shows the result of a hint search on the board. Called on the FX thread, while the board is unchanged.
+     *
+     * @param hint the result of the search
+     */
+    private void showHint(Hint hint) {
         // highlight cards in set on board
-        if (set.length == 3) {
-            statusMessage.setText("Found a set!");
+        if (hint.set.length == 3) {
+            statusMessage.setText(String.format("Found a set! (%d on board)", hint.sets));
             if (debug) System.out.println("set found!");
 
-            for (BoardSquare bs : set) {
-                int row = bs.getRowPos();
-                int col = bs.getColPos();
-
-                // loop through grid children until card at specified position is found
-                for (Node n : grid.getChildren()) {
-                    if (GridPane.getColumnIndex(n) == col && GridPane.getRowIndex(n) == row) {
-                        n.setStyle("-fx-background-color: #fff;"
-                                           + "-fx-border-width: 3;"
-                                           + "-fx-border-color: orangered;"
-                                           + "-fx-border-style: dashed;");
-                    }
-                }
-                if (debug) System.out.println(String.format("card location: (c:%d, r:%d)", bs.getColPos(), bs.getRowPos()));
+            BoardSquare[] set = new BoardSquare[3];
+            for (int i = 0; i < 3; i++) {
+                set[i] = game.getBoard().getBoardSquare(hint.set[i]);
+                // look up the card's pane by its slot
+                if (canvas == null)
+                    panes[hint.set[i]].highlight();
+                if (debug) System.out.println(String.format("card location: (c:%d, r:%d)", set[i].getColPos(), set[i].getRowPos()));
             }
+            if (canvas != null)
+                canvas.highlight(set);
         }
         else {
             statusMessage.setText("No sets found.");
@@ -246,6 +341,19 @@ public class GameGUI extends Application {
         }
     }
 
+    /**
+     * The result of a hint search: a set on the board, and how many there are.
+     */
+    private static class Hint {
+        private final int[] set;    // slots of the set's cards, empty if there is none
+        private final int sets;
+
+        private Hint(BoardSnapshot snapshot) {
+            this.set = snapshot.findSet();
+            this.sets = snapshot.countSets();
+        }
+    }
+
     /**
      * Event Handler
      * Handles adding 3 cards to the board when the corresponding button is pressed.
@@ -253,7 +361,7 @@ public class GameGUI extends Application {
      * @param e an Event (a button press)
      */
     private void handleAdd3(ActionEvent e) {
-        if (game.cardsRemaining() >= 3 && grid.getChildren().size() < 18) {
+        if (game.cardsRemaining() >= 3 && game.numCardsOnBoard() < 18) {
             if (debug) System.out.println("adding 3 cards");
 
             game.add3();
@@ -261,7 +369,7 @@ public class GameGUI extends Application {
             cardsRemaining.setText(String.format("Cards remaining: %d", game.cardsRemaining()));
         }
         else {
-            if (grid.getChildren().size() >= 18)
+            if (game.numCardsOnBoard() >= 18)
                 statusMessage.setText("Too many cards on board!");
             else if (game.cardsRemaining() < 3)
                 statusMessage.setText("Not enough cards in deck!");
@@ -280,27 +388,49 @@ public class GameGUI extends Application {
 
         if (debug) System.out.println(String.format("pane clicked: (c:%d, r:%d) | %s", cp.getCol(), cp.getRow(), cp.getCard().toString()));
 
+        if (!this.selectSquare(bs))
+            cp.refresh();
+    }
+
+    /**
+     * Event Handler
+     * Logic for clicking on the BoardCanvas, finding the card that was clicked on and selecting it.
+     *
+     * @param e a mouse click
+     */
+    private void handleClickCanvas(MouseEvent e) {
+        BoardSquare bs = canvas.squareAt(e.getX(), e.getY());
+        if (bs == null)
+            return;
+
+        if (debug) System.out.println(String.format("canvas clicked: (c:%d, r:%d) | %s", bs.getColPos(), bs.getRowPos(), bs.getCard().toString()));
+
+        if (!this.selectSquare(bs))
+            canvas.redraw();
+    }
+    //endregion
+
+    /**
+     * Selects or deselects a card, and handles any set testing that needs to be done.
+     *
+     * @param bs the BoardSquare of the card that was clicked on
+     * @return true if three cards were tested and the whole board was redrawn
+     */
+    private boolean selectSquare(BoardSquare bs) {
         // select or deselect card
         if (!bs.isCurrentlySelected()) {
             bs.setCurrentlySelected(true);
-            cp.setStyle("-fx-background-color: lightblue;"
-                                + "-fx-border-width: 3;"
-                                + "-fx-border-color: #000;"
-                                + "-fx-border-style: solid;");
-            game.addToSelected(cp.getRow(), cp.getCol());
+            game.addToSelected(bs.getRowPos(), bs.getColPos());
         }
         else if (bs.isCurrentlySelected()) {
             bs.setCurrentlySelected(false);
-            cp.setStyle("-fx-background-color: #fff;"
-                                + "-fx-border-width: 3;"
-                                + "-fx-border-color: #000;"
-                                + "-fx-border-style: solid;");
-            game.removeSelected(cp.getRow(), cp.getCol());
+            game.removeSelected(bs.getRowPos(), bs.getColPos());
         }
 
 
         // test three cards
-        if (game.numSelected() == 3) {
+        boolean tested = game.numSelected() == 3;
+        if (tested) {
             boolean isSet = game.testSelected();
 
             if (debug) {
@@ -313,6 +443,6 @@ public class GameGUI extends Application {
 
         // update cards remaining label
         cardsRemaining.setText(String.format("Cards remaining: %d", game.cardsRemaining()));
+        return tested;
     }
-    //endregion
 }
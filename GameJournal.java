@@ -0,0 +1,215 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An append-only journal of every action taken in a Game, for audits and dispute resolution.
+ * <p>
+ * Events are encoded into fixed-size 8-byte records and written straight into a memory-mapped file, so
+ * appending an event is a single store with no system call. The file is only remapped when it runs out of room.
+ * <p>
+ * File layout: a 16-byte header (magic, format version, number of records), followed by the records.
+ * Each record holds an event type, a row, a column, a result and the number of cards left in the deck.
+ * A DEAL record is followed by {@link #SNAPSHOT_RECORDS} records holding the Game's state as written by
+ * {@link Game#writeTo(ByteBuffer)}, which is what makes replay deterministic.
+ */
+public class GameJournal implements Closeable {
+    public static final byte DEAL       = 1;
+    public static final byte SELECT     = 2;
+    public static final byte DESELECT   = 3;
+    public static final byte TEST       = 4;
+    public static final byte ADD3       = 5;
+
+    private static final int MAGIC = 0x4A544553; // "SETJ"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_SIZE = 8;
+    private static final int SNAPSHOT_RECORDS = 128 / RECORD_SIZE;
+    private static final long INITIAL_RECORDS = 1 << 20;
+
+    private final FileChannel channel;
+    private MappedByteBuffer buffer;
+    private long records;
+
+    /**
+     * Opens a journal for appending, creating the file if it does not exist.
+     * @param file the journal file
+     * @throws IOException if the file cannot be opened or is not a journal
+     */
+    public GameJournal(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        boolean isNew = channel.size() == 0;
+        map(Math.max(channel.size(), HEADER_SIZE + INITIAL_RECORDS * RECORD_SIZE));
+
+        if (isNew) {
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+        }
+        else {
+            checkHeader(buffer);
+            records = buffer.getLong(8);
+        }
+    }
+
+    /**
+     * @return the number of records in this journal, counting the records holding DEAL snapshots
+     */
+    public long getRecords() {
+        return records;
+    }
+
+    /**
+     * Records the start of a Game, or a Game restored from a save, along with its full state.
+     * @param game the Game that was dealt
+     */
+    void deal(Game game) {
+        append(DEAL, 0, 0, 0, game.cardsRemaining());
+        ensureCapacity(SNAPSHOT_RECORDS);
+
+        // the snapshot goes directly into the mapped file
+        ByteBuffer snapshot = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        snapshot.position((int) (HEADER_SIZE + records * RECORD_SIZE));
+        snapshot.limit(snapshot.position() + SNAPSHOT_RECORDS * RECORD_SIZE);
+        game.writeTo(snapshot);
+
+        records += SNAPSHOT_RECORDS;
+        buffer.putLong(8, records);
+    }
+
+    /**
+     * Appends one event.
+     * @param type the type of event: SELECT, DESELECT, TEST, ADD3 (or DEAL, via deal())
+     * @param row the row of the card involved, if any
+     * @param col the column of the card involved, if any
+     * @param result the outcome of a TEST: 1 if the cards were a set, 0 otherwise
+     * @param cardsRemaining the number of cards left in the deck after the event
+     */
+    void append(byte type, int row, int col, int result, int cardsRemaining) {
+        ensureCapacity(1);
+        long record = (type & 0xFFL)
+                | (row & 0xFFL) << 8
+                | (col & 0xFFL) << 16
+                | (result & 0xFFL) << 24
+                | (long) cardsRemaining << 32;
+        buffer.putLong((int) (HEADER_SIZE + records * RECORD_SIZE), record);
+        buffer.putLong(8, ++records);
+    }
+
+    /**
+     * Flushes the journal to disk and closes it.
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    /**
+     * Makes sure there is room for more records, remapping a file twice as large if there is not.
+     * @param count the number of records about to be appended
+     */
+    private void ensureCapacity(int count) {
+        long needed = HEADER_SIZE + (records + count) * RECORD_SIZE;
+        if (needed <= buffer.capacity())
+            return;
+        try {
+            map(Math.min(Integer.MAX_VALUE, 2L * buffer.capacity()));
+        }
+        catch (IOException e) {
+            throw new IllegalStateException("could not grow journal", e);
+        }
+        if (needed > buffer.capacity())
+            throw new IllegalStateException("journal is full");
+    }
+
+    /**
+     * Maps the first bytes of the file, growing it if needed.
+     * @param size the number of bytes to map
+     * @throws IOException if the file cannot be mapped
+     */
+    private void map(long size) throws IOException {
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * @param buf a buffer holding a journal file, from position 0
+     * @throws IOException if the buffer does not hold a journal this class can read
+     */
+    private static void checkHeader(ByteBuffer buf) throws IOException {
+        if (buf.getInt(0) != MAGIC)
+            throw new IOException("not a Set journal");
+        if (buf.getInt(4) != VERSION)
+            throw new IOException(String.format("unsupported journal version: %d", buf.getInt(4)));
+    }
+
+    /**
+     * Rebuilds the exact state of a journaled Game after a given number of events.
+     * <p>
+     * Every event is re-applied to the Game restored from the last DEAL. The outcome of every TEST and the size
+     * of the deck are checked against what was recorded, so a tampered or inconsistent journal is detected.
+     * @param file the journal file
+     * @param events the number of events to replay; a DEAL and its snapshot count as one event
+     * @return the Game as it was after that many events, or null if the journal starts with no DEAL
+     * @throws IOException if the file cannot be read or is not a journal
+     * @throws IllegalStateException if the Game does not behave as the journal recorded
+     */
+    public static Game replay(Path file, long events) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buf.order(ByteOrder.LITTLE_ENDIAN);
+            checkHeader(buf);
+            long records = buf.getLong(8);
+
+            Game game = null;
+            long event = 0;
+            for (long r = 0; r < records && event < events; r++, event++) {
+                int position = (int) (HEADER_SIZE + r * RECORD_SIZE);
+                long record = buf.getLong(position);
+                byte type = (byte) record;
+                int row = (int) (record >>> 8) & 0xFF;
+                int col = (int) (record >>> 16) & 0xFF;
+                int result = (int) (record >>> 24) & 0xFF;
+                int cardsRemaining = (int) (record >>> 32);
+
+                if (type == DEAL) {
+                    ByteBuffer snapshot = buf.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+                    snapshot.position(position + RECORD_SIZE);
+                    game = new Game();
+                    game.readFrom(snapshot);
+                    r += SNAPSHOT_RECORDS;
+                }
+                else if (game == null) {
+                    throw new IllegalStateException(String.format("event %d comes before any deal", event));
+                }
+                else if (type == SELECT) {
+                    game.addToSelected(row, col);
+                }
+                else if (type == DESELECT) {
+                    game.removeSelected(row, col);
+                }
+                else if (type == TEST) {
+                    if (game.testSelected() != (result == 1))
+                        throw new IllegalStateException(String.format("event %d: set test diverged", event));
+                }
+                else if (type == ADD3) {
+                    game.add3();
+                }
+                else {
+                    throw new IllegalStateException(String.format("event %d: unknown type %d", event, type));
+                }
+
+                if (game.cardsRemaining() != cardsRemaining)
+                    throw new IllegalStateException(String.format("event %d: deck diverged", event));
+            }
+
+            return game;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms of the Game's operations, readable over JMX and recorded as Flight Recorder events.
+ * <p>
+ * Metrics are off unless the JVM is started with {@code -Dset.metrics=true}. The switch is a static final field, so
+ * when it is off the JIT drops the instrumentation entirely. When it is on, every call adds to LongAdders, which
+ * stay cheap with many threads playing at once, and to a histogram of power-of-two latency buckets. Every call is
+ * also a {@code set.GameOperation} Flight Recorder event, begun before the operation and committed after it, so
+ * the event's duration is the call's and the recording's threshold setting applies to it. The registry is
+ * registered with the platform MBeanServer as {@value #OBJECT_NAME}.
+ * <p>
+ * Instrumented code follows the same pattern everywhere:
+ * <pre>
+ *   GameMetrics.OperationEvent call = GameMetrics.ENABLED ? GameMetrics.FIND_SET.begin() : null;
+ *   ... the operation ...
+ *   if (GameMetrics.ENABLED) GameMetrics.FIND_SET.end(call);
+ * </pre>
+ */
+public final class GameMetrics implements GameMetricsMXBean {
+    public static final boolean ENABLED = Boolean.getBoolean("set.metrics");
+    public static final String OBJECT_NAME = "set:type=GameMetrics";
+
+    public static final Operation FIND_SET = new Operation("findSet");
+    public static final Operation TEST_SELECTED = new Operation("testSelected");
+    public static final Operation ADD3 = new Operation("add3");
+    public static final Operation COMPRESS_BOARD = new Operation("compressBoard");
+    private static final Operation[] OPERATIONS = {FIND_SET, TEST_SELECTED, ADD3, COMPRESS_BOARD};
+
+    private static final LongAdder validSets = new LongAdder();
+    private static final LongAdder invalidSets = new LongAdder();
+
+    static {
+        if (ENABLED) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(new GameMetrics(), new ObjectName(OBJECT_NAME));
+            }
+            catch (JMException e) {
+                throw new IllegalStateException("could not register " + OBJECT_NAME, e);
+            }
+        }
+    }
+
+    private GameMetrics() {
+    }
+
+    /**
+     * Counts a selection of three cards submitted to Game.testSelected().
+     * @param valid whether the three cards were a set
+     */
+    public static void recordSubmission(boolean valid) {
+        (valid ? validSets : invalidSets).increment();
+    }
+
+    /**
+     * The calls to one operation: how many, how long in total, and a histogram of how long each.
+     */
+    public static final class Operation {
+        private final String name;
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAdder[] histogram = new LongAdder[64];  // bucket b counts calls of 2^(b-1) to 2^b - 1 ns
+
+        private Operation(String name) {
+            this.name = name;
+            for (int b = 0; b < histogram.length; b++)
+                histogram[b] = new LongAdder();
+        }
+
+        /**
+         * Starts timing one call, just before the operation runs.
+         * @return the call's event, to hand to end() once the operation is done
+         */
+        OperationEvent begin() {
+            OperationEvent event = new OperationEvent();
+            if (event.isEnabled())
+                event.begin();
+            event.startNanos = System.nanoTime();
+            return event;
+        }
+
+        /**
+         * Records one call, just after the operation has run.
+         * @param event the event returned by begin() when the call started
+         */
+        void end(OperationEvent event) {
+            long nanos = System.nanoTime() - event.startNanos;
+            calls.increment();
+            totalNanos.add(nanos);
+            histogram[64 - Long.numberOfLeadingZeros(Math.max(nanos, 0))].increment();
+
+            event.end();
+            if (event.shouldCommit()) {
+                event.operation = name;
+                event.commit();
+            }
+        }
+
+        /**
+         * @param fraction a fraction of the calls, e.g. 0.99
+         * @return the upper end of the histogram bucket holding that quantile, in nanoseconds, or 0 with no calls
+         */
+        long quantile(double fraction) {
+            long[] counts = new long[histogram.length];
+            long total = 0;
+            for (int b = 0; b < counts.length; b++)
+                total += counts[b] = histogram[b].sum();
+
+            long seen = 0;
+            for (int b = 0; b < counts.length; b++) {
+                seen += counts[b];
+                if (seen > 0 && seen >= fraction * total)
+                    return b == 0 ? 0 : (1L << b) - 1;
+            }
+            return 0;
+        }
+
+        void reset() {
+            calls.reset();
+            totalNanos.reset();
+            for (LongAdder bucket : histogram)
+                bucket.reset();
+        }
+    }
+
+    /**
+     * The Flight Recorder event of one call to an instrumented operation.
+     */
+    @Name("set.GameOperation")
+    @Label("Game Operation")
+    @Category("Set")
+    @Description("A call to findSet, testSelected, add3 or compressBoard")
+    static class OperationEvent extends Event {
+        @Label("Operation")
+        String operation;
+
+        // for the JMX histograms, which count calls whether or not a recording is on; transient, so not recorded
+        transient long startNanos;
+    }
+
+    // region GameMetricsMXBean
+
+    @Override
+    public boolean isEnabled() {
+        return ENABLED;
+    }
+
+    @Override
+    public long getValidSets() {
+        return validSets.sum();
+    }
+
+    @Override
+    public long getInvalidSets() {
+        return invalidSets.sum();
+    }
+
+    @Override
+    public Map<String, Long> getCalls() {
+        Map<String, Long> map = new LinkedHashMap<>();
+        for (Operation op : OPERATIONS)
+            map.put(op.name, op.calls.sum());
+        return map;
+    }
+
+    @Override
+    public Map<String, Double> getMeanNanos() {
+        Map<String, Double> map = new LinkedHashMap<>();
+        for (Operation op : OPERATIONS) {
+            long calls = op.calls.sum();
+            map.put(op.name, calls == 0 ? 0 : (double) op.totalNanos.sum() / calls);
+        }
+        return map;
+    }
+
+    @Override
+    public Map<String, Long> getMedianNanos() {
+        Map<String, Long> map = new LinkedHashMap<>();
+        for (Operation op : OPERATIONS)
+            map.put(op.name, op.quantile(0.5));
+        return map;
+    }
+
+    @Override
+    public Map<String, Long> getP99Nanos() {
+        Map<String, Long> map = new LinkedHashMap<>();
+        for (Operation op : OPERATIONS)
+            map.put(op.name, op.quantile(0.99));
+        return map;
+    }
+
+    @Override
+    public Map<String, long[]> getHistograms() {
+        Map<String, long[]> map = new LinkedHashMap<>();
+        for (Operation op : OPERATIONS) {
+            long[] counts = new long[op.histogram.length];
+            for (int b = 0; b < counts.length; b++)
+                counts[b] = op.histogram[b].sum();
+            map.put(op.name, counts);
+        }
+        return map;
+    }
+
+    @Override
+    public void reset() {
+        for (Operation op : OPERATIONS)
+            op.reset();
+        validSets.reset();
+        invalidSets.reset();
+    }
+
+    // endregion GameMetricsMXBean
+}
@@ -0,0 +1,53 @@
+import java.util.Map;
+
+/**
+ * The JMX view of GameMetrics. Every map is keyed by operation: findSet, testSelected, add3 and compressBoard.
+ */
+public interface GameMetricsMXBean {
+
+    /**
+     * @return whether the JVM was started with -Dset.metrics=true; everything else stays 0 otherwise.
+     */
+    boolean isEnabled();
+
+    /**
+     * @return how many selections of three cards submitted to testSelected() were sets.
+     */
+    long getValidSets();
+
+    /**
+     * @return how many selections of three cards submitted to testSelected() were not sets.
+     */
+    long getInvalidSets();
+
+    /**
+     * @return the number of calls to each operation.
+     */
+    Map<String, Long> getCalls();
+
+    /**
+     * @return the mean time of each operation, in nanoseconds.
+     */
+    Map<String, Double> getMeanNanos();
+
+    /**
+     * @return the median time of each operation, rounded up to the top of its power-of-two bucket, in nanoseconds.
+     */
+    Map<String, Long> getMedianNanos();
+
+    /**
+     * @return the 99th percentile time of each operation, rounded up to the top of its power-of-two bucket,
+     *         in nanoseconds.
+     */
+    Map<String, Long> getP99Nanos();
+
+    /**
+     * @return the latency histogram of each operation: element b counts the calls that took 2^(b-1) to 2^b - 1 ns.
+     */
+    Map<String, long[]> getHistograms();
+
+    /**
+     * Sets every counter and histogram back to 0.
+     */
+    void reset();
+}
@@ -0,0 +1,373 @@
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Plays a script of GameText's commands against a Game in one pass, for regression and load tests.
+ * <p>
+ * Input is read in large blocks and parsed byte by byte, and replies are formatted straight into an output block,
+ * so running a command allocates nothing. Each command is answered by one line, with the same replies as SetServer:
+ * <pre>
+ *   s r c      select the card at row r, column c        -&gt; ok | set | noset | err ...
+ *   d r c      deselect the card at row r, column c      -&gt; ok | err ...
+ *   a          add 3 cards                               -&gt; ok | err ...
+ *   l          list selected cards                       -&gt; selected r c r c ...
+ *   b          show the board                            -&gt; board remaining sets cols i i i ... (row by row)
+ *   e          end the script                            -&gt; bye
+ * </pre>
+ * Blank lines, lines starting with '#' and a leading UTF-8 byte order mark are skipped. Unless the script is
+ * quiet, every set and every add3 is followed by a board line, as GameText re-displays the board. Once the game is
+ * over (no cards left to deal and no set on the board) an "over" line is written and the rest of the script is
+ * ignored.
+ * <p>
+ * Run it with {@code java GameText --batch[=<file>] [--seed=<n>] [--quiet]}; without a file it reads stdin.
+ */
+public class GameScript {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int MAX_LINE = 256;    // most a command can write: a reply, a board line with 21 cards, over
+
+    private static final byte[] OK = bytes("ok");
+    private static final byte[] SET = bytes("set");
+    private static final byte[] NOSET = bytes("noset");
+    private static final byte[] SELECTED = bytes("selected");
+    private static final byte[] BOARD = bytes("board");
+    private static final byte[] BYE = bytes("bye");
+    private static final byte[] OVER = bytes("over");
+    private static final byte[] ERR_SELECT = bytes("err expected: s row col");
+    private static final byte[] ERR_DESELECT = bytes("err expected: d row col");
+    private static final byte[] ERR_NOT_SELECTED = bytes("err not selected");
+    private static final byte[] ERR_ALREADY_SELECTED = bytes("err already selected");
+    private static final byte[] ERR_ADD3 = bytes("err can't add 3 more cards");
+    private static final byte[] ERR_UNKNOWN = bytes("err unknown command");
+
+    private final InputStream in;
+    private final OutputStream out;
+    private final boolean quiet;
+
+    private final byte[] input = new byte[BUFFER_SIZE];
+    private int inputPos;
+    private int inputLimit;
+    private final byte[] output = new byte[BUFFER_SIZE];
+    private int outputPos;
+
+    // the arguments of the command being run
+    private int argc;
+    private final int[] argv = new int[2];
+    private boolean badArgs;
+
+    /**
+     * Constructor.
+     * @param in the script
+     * @param out where the replies go
+     * @param quiet whether to leave out the board lines after sets and add3s
+     */
+    public GameScript(InputStream in, OutputStream out, boolean quiet) {
+        this.in = in;
+        this.out = out;
+        this.quiet = quiet;
+    }
+
+    /**
+     * Runs the script to its end, an "e" command, or the end of the game, whichever comes first.
+     * @param game the Game to play
+     * @return the number of commands run
+     * @throws IOException if the script cannot be read or the replies cannot be written
+     */
+    public long run(Game game) throws IOException {
+        long commands = 0;
+        boolean stop = false;
+        if (inputPos == 0 && inputLimit == 0)
+            skipByteOrderMark();
+
+        while (!stop) {
+            int command = nextCommand();
+            if (command < 0)
+                break;
+            commands++;
+            if (outputPos > BUFFER_SIZE - MAX_LINE)
+                flush();
+
+            switch (command) {
+                case 's':
+                case 'S':
+                    select(game);
+                    break;
+                case 'd':
+                case 'D':
+                    deselect(game);
+                    break;
+                case 'a':
+                case 'A':
+                    if (game.cardsRemaining() < 3 || game.numCardsOnBoard() + 3 > Board.CAPACITY) {
+                        line(ERR_ADD3);
+                    }
+                    else {
+                        game.add3();
+                        line(OK);
+                        if (!quiet)
+                            board(game);
+                    }
+                    break;
+                case 'l':
+                case 'L':
+                    write(SELECTED);
+                    for (BoardSquare bs : game.getSelected()) {
+                        writeInt(bs.getRowPos());
+                        writeInt(bs.getColPos());
+                    }
+                    output[outputPos++] = '\n';
+                    break;
+                case 'b':
+                case 'B':
+                    board(game);
+                    break;
+                case 'e':
+                case 'E':
+                    line(BYE);
+                    stop = true;
+                    break;
+                default:
+                    line(ERR_UNKNOWN);
+            }
+
+            if (!stop && game.outOfCards() && !game.hasSet()) {
+                line(OVER);
+                stop = true;
+            }
+        }
+
+        flush();
+        return commands;
+    }
+
+    /**
+     * Runs "s r c": selects a card, testing the selection once it holds three.
+     */
+    private void select(Game game) {
+        Board board = game.getBoard();
+        if (!isPosition(board)) {
+            line(ERR_SELECT);
+            return;
+        }
+        if (board.getBoardSquare(argv[0], argv[1]).isCurrentlySelected()) {
+            line(ERR_ALREADY_SELECTED);
+            return;
+        }
+
+        game.addToSelected(argv[0], argv[1]);
+        if (game.numSelected() < 3) {
+            line(OK);
+            return;
+        }
+
+        line(game.testSelected() ? SET : NOSET);
+        if (!quiet)
+            board(game);
+    }
+
+    /**
+     * Runs "d r c": deselects a card.
+     */
+    private void deselect(Game game) {
+        Board board = game.getBoard();
+        if (!isPosition(board)) {
+            line(ERR_DESELECT);
+            return;
+        }
+        if (!board.getBoardSquare(argv[0], argv[1]).isCurrentlySelected()) {
+            line(ERR_NOT_SELECTED);
+            return;
+        }
+
+        game.removeSelected(argv[0], argv[1]);
+        line(OK);
+    }
+
+    /**
+     * @return whether the command's arguments are the row and column of a card on the Board
+     */
+    private boolean isPosition(Board board) {
+        return !badArgs && argc == 2 && argv[0] < board.numRows() && argv[1] < board.numCols();
+    }
+
+    /**
+     * Writes a board line: cards remaining, sets on the board, columns, then every card's index row by row.
+     */
+    private void board(Game game) {
+        Board board = game.getBoard();
+        write(BOARD);
+        writeInt(game.cardsRemaining());
+        writeInt(game.countSets());
+        writeInt(board.numCols());
+        for (int row = 0; row < board.numRows(); row++)
+            for (int col = 0; col < board.numCols(); col++)
+                writeInt(board.getBoardSquare(row, col).getCard().getIndex());
+        output[outputPos++] = '\n';
+    }
+
+    // region input
+
+    /**
+     * Reads the next command line, leaving its arguments in argc, argv and badArgs.
+     * @return the command character, or -1 at the end of the script
+     */
+    private int nextCommand() throws IOException {
+        while (true) {
+            int c = read();
+            while (c == ' ' || c == '\t')
+                c = read();
+            if (c < 0)
+                return -1;
+            if (c == '\n' || c == '\r')
+                continue;
+            if (c == '#') {
+                skipLine();
+                continue;
+            }
+
+            int command = c;
+            argc = 0;
+            badArgs = false;
+
+            // the command must be a single character, then numbers separated by spaces
+            c = read();
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r' && c >= 0) {
+                skipLine();
+                return 0;
+            }
+            while (c >= 0 && c != '\n') {
+                if (c >= '0' && c <= '9') {
+                    int value = 0;
+                    while (c >= '0' && c <= '9') {
+                        value = Math.min(value * 10 + c - '0', 1_000_000);
+                        c = read();
+                    }
+                    if (argc < argv.length)
+                        argv[argc] = value;
+                    argc++;
+                }
+                else if (c == ' ' || c == '\t' || c == '\r') {
+                    c = read();
+                }
+                else {
+                    badArgs = true;
+                    c = read();
+                }
+            }
+            return command;
+        }
+    }
+
+    private void skipLine() throws IOException {
+        int c;
+        do {
+            c = read();
+        } while (c >= 0 && c != '\n');
+    }
+
+    private int read() throws IOException {
+        if (inputPos == inputLimit) {
+            inputLimit = in.read(input, 0, input.length);
+            inputPos = 0;
+            if (inputLimit <= 0) {
+                inputLimit = 0;
+                return -1;
+            }
+        }
+        return input[inputPos++] & 0xFF;
+    }
+
+    /**
+     * Skips the UTF-8 byte order mark some editors write at the start of a file.
+     */
+    private void skipByteOrderMark() throws IOException {
+        while (inputLimit < 3) {
+            int n = in.read(input, inputLimit, input.length - inputLimit);
+            if (n <= 0)
+                break;
+            inputLimit += n;
+        }
+        if (inputLimit >= 3 && (input[0] & 0xFF) == 0xEF && (input[1] & 0xFF) == 0xBB && (input[2] & 0xFF) == 0xBF)
+            inputPos = 3;
+    }
+
+    // endregion input
+
+    // region output
+
+    private void line(byte[] reply) {
+        write(reply);
+        output[outputPos++] = '\n';
+    }
+
+    private void write(byte[] bytes) {
+        System.arraycopy(bytes, 0, output, outputPos, bytes.length);
+        outputPos += bytes.length;
+    }
+
+    /**
+     * Writes a space and then a non-negative number.
+     */
+    private void writeInt(int value) {
+        output[outputPos++] = ' ';
+        if (value >= 10) {
+            int digits = value >= 100 ? 3 : 2;
+            for (int i = digits - 1; i >= 0; i--) {
+                output[outputPos + i] = (byte) ('0' + value % 10);
+                value /= 10;
+            }
+            outputPos += digits;
+        }
+        else {
+            output[outputPos++] = (byte) ('0' + value);
+        }
+    }
+
+    private void flush() throws IOException {
+        out.write(output, 0, outputPos);
+        out.flush();
+        outputPos = 0;
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    // endregion output
+
+    /**
+     * Runs a script.
+     * @param args --batch (stdin) or --batch=&lt;file&gt;, optionally --seed=&lt;n&gt; and --quiet
+     * @throws IOException if the script cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        String file = null;
+        Long seed = null;
+        boolean quiet = false;
+        for (String arg : args) {
+            if (arg.startsWith("--batch="))
+                file = arg.substring("--batch=".length());
+            else if (arg.startsWith("--seed="))
+                seed = Long.parseLong(arg.substring("--seed=".length()));
+            else if (arg.equals("--quiet"))
+                quiet = true;
+        }
+
+        Game game = seed == null ? new Game() : new Game(seed);
+        // stdin and stdout belong to the process, so they are flushed but never closed
+        OutputStream out = new FileOutputStream(FileDescriptor.out);
+        if (file == null) {
+            new GameScript(new FileInputStream(FileDescriptor.in), out, quiet).run(game);
+        }
+        else {
+            try (InputStream in = new FileInputStream(file)) {
+                new GameScript(in, out, quiet).run(game);
+            }
+        }
+        out.flush();
+    }
+}
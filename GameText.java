@@ -1,15 +1,34 @@
+import java.io.IOException;
 import java.util.Scanner;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 public class GameText
 {
 
-   public static void main(String [] args) {
-      // create game
-      Game g = new Game();
+   public static void main(String [] args) throws IOException {
+      // run a command script instead of playing, when given --batch or --batch=<file>
+      Long seed = null;
+      for (String arg : args) {
+         if (arg.equals("--batch") || arg.startsWith("--batch=")) {
+            GameScript.main(args);
+            return;
+         }
+         if (arg.startsWith("--seed="))
+            seed = Long.parseLong(arg.substring("--seed=".length()));
+      }
+      
+      // create game (the same seed always deals the same game)
+      Game g = seed == null ? new Game() : new Game(seed);
+      
+      // draw the board in place on a terminal, unless output is redirected or --plain is given
+      TerminalRenderer screen = null;
+      if (System.console() != null && !Arrays.asList(args).contains("--plain"))
+         screen = new TerminalRenderer(System.out);
       
       // display board
-      System.out.println(g); 
+      if (screen == null)
+         System.out.println(g); 
       // connect Scanner to keyboard
       Scanner keyboard = new Scanner(System.in);
       // variables for user input
@@ -18,8 +37,11 @@ public class GameText
       // flag for ending
       boolean stop = false;
       
-      // while the game isn't over and user doesn't want to quit
-      while (!g.outOfCards() && !stop) {
+      // while there are cards left or a set on the board, and user doesn't want to quit
+      while ((!g.outOfCards() || g.hasSet()) && !stop) {
+         // bring the screen up to date (only what changed is redrawn)
+         if (screen != null)
+            screen.render(g.getBoard());
          // give user their choices
          System.out.print("(s)elect, (d)eselect, (a)dd3, (l)ist selected, (e)nd: ");
          // get user choice
@@ -32,7 +54,13 @@ public class GameText
             System.out.print("row / column [r c]: ");
             row = keyboard.nextInt();
             col = keyboard.nextInt();
-            g.addToSelected(row,col);
+            if (!g.addToSelected(row,col))
+            {
+               if (screen == null)
+                  System.out.println("That card is already selected!");
+               else
+                  screen.setStatus("That card is already selected!");
+            }
             // if it's the 3rd card selected
             if (g.numSelected() == 3) 
             {
@@ -41,7 +69,8 @@ public class GameText
                // if it is NOT a set, all selected cards are unselected
                g.testSelected();
                // re-display board
-               System.out.println(g);
+               if (screen == null)
+                  System.out.println(g);
             }     
           }
           // deselect
@@ -56,15 +85,29 @@ public class GameText
           // add 3 cards (1 to each row), redisplay
           else if (input.equalsIgnoreCase("a"))
           {
-            g.add3(); 
-            System.out.println(g); 
+            if (g.numCardsOnBoard() + 3 > Board.CAPACITY || g.cardsRemaining() < 3)
+            {
+               if (screen == null)
+                  System.out.println("Can't add 3 more cards!");
+               else
+                  screen.setStatus("Can't add 3 more cards!");
+            }
+            else
+            {
+               g.add3(); 
+               if (screen == null)
+                  System.out.println(g); 
+            }
           
           }
           // list all cards currently selected
           else if (input.equalsIgnoreCase("l"))
           {
             ArrayList<BoardSquare> selected = g.getSelected();
-            System.out.println(selected);
+            if (screen == null)
+               System.out.println(selected);
+            else
+               screen.setStatus(selected.toString());
           
           }
           // user wants to be done
@@ -0,0 +1,57 @@
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+
+/**
+ * A bot strategy: decides, on its turn, which set to take or whether to ask for three more cards.
+ * <p>
+ * Players are shared by every game of a Tournament running in parallel, so they must not keep any mutable state;
+ * everything they need is in the BoardView and the random number generator of the game.
+ */
+public interface Player {
+
+    /**
+     * Takes the first set the Game finds.
+     */
+    Player FIRST_FOUND = (board, rng) -> board.findSet();
+
+    /**
+     * Takes the set that leaves the most sets among the cards still on the board.
+     */
+    Player MOST_FOLLOW_UP = (board, rng) -> {
+        ArrayList<int[]> sets = board.findAllSets();
+        int[] best = new int[] {};
+        int bestFollowUps = -1;
+        for (int[] set : sets) {
+            // the sets left are the ones sharing no card with this one
+            int followUps = 0;
+            for (int[] other : sets)
+                if (other[0] != set[0] && other[0] != set[1] && other[0] != set[2]
+                        && other[1] != set[0] && other[1] != set[1] && other[1] != set[2]
+                        && other[2] != set[0] && other[2] != set[1] && other[2] != set[2])
+                    followUps++;
+            if (followUps > bestFollowUps) {
+                best = set;
+                bestFollowUps = followUps;
+            }
+        }
+        return best;
+    };
+
+    /**
+     * Takes one of the sets on the board at random.
+     */
+    Player RANDOM = (board, rng) -> {
+        ArrayList<int[]> sets = board.findAllSets();
+        if (sets.isEmpty())
+            return new int[] {};
+        return sets.get(rng.nextInt(sets.size()));
+    };
+
+    /**
+     * Chooses this turn's move.
+     * @param board a read-only view of the Board.
+     * @param rng the random number generator of the game being played.
+     * @return the slots of three cards that form a set, or an empty Array to ask for more cards instead.
+     */
+    int[] move(BoardView board, SplittableRandom rng);
+}
@@ -0,0 +1,228 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A file of puzzle boards, memory-mapped so that any puzzle can be read by number in constant time.
+ * <p>
+ * Every board in a bank has the same number of cards. A board is stored as its rank in the combinatorial number
+ * system: its card indices c0 &lt; c1 &lt; ... &lt; c(k-1) are ranked as C(c0, 1) + C(c1, 2) + ... + C(c(k-1), k),
+ * a number below C(81, k) that takes as few whole bytes as possible, e.g. 6 bytes for a 12-card board.
+ * <p>
+ * File layout: a 16-byte header (magic, format version, cards per board, bytes per record, number of boards),
+ * followed by the fixed-size records, little-endian. A bank can hold boards of up to 20 cards, and up to 2 GiB.
+ */
+public class PuzzleBank implements Closeable {
+    public static final int MAX_CARDS = 20;     // C(81, 21) does not fit in a long
+
+    private static final int MAGIC = 0x50544553; // "SETP"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final long[][] BINOMIAL = new long[82][MAX_CARDS + 1];   // BINOMIAL[n][k] = C(n, k)
+
+    static {
+        for (int n = 0; n < BINOMIAL.length; n++) {
+            BINOMIAL[n][0] = 1;
+            for (int k = 1; k <= Math.min(n, MAX_CARDS); k++)
+                BINOMIAL[n][k] = BINOMIAL[n - 1][k - 1] + (k <= n - 1 ? BINOMIAL[n - 1][k] : 0);
+        }
+    }
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int cards;
+    private final int recordSize;
+    private final long size;
+    private final boolean writable;
+
+    private PuzzleBank(FileChannel channel, MappedByteBuffer buffer, boolean writable) {
+        this.channel = channel;
+        this.buffer = buffer;
+        this.cards = buffer.get(5);
+        this.recordSize = buffer.get(6);
+        this.size = buffer.getLong(8);
+        this.writable = writable;
+    }
+
+    /**
+     * Creates a bank with room for a given number of boards, replacing the file if it exists.
+     * Boards are then written with put(); different threads may write different boards at the same time.
+     * @param file the bank file
+     * @param cards the number of cards in every board
+     * @param size the number of boards
+     * @return the bank, open for writing
+     * @throws IOException if the file cannot be created
+     */
+    public static PuzzleBank create(Path file, int cards, long size) throws IOException {
+        if (cards < 1 || cards > MAX_CARDS)
+            throw new IllegalArgumentException(String.format("cards per board must be 1..%d: %d", MAX_CARDS, cards));
+        int recordSize = recordSize(cards);
+        long bytes = HEADER_SIZE + size * recordSize;
+        if (size < 0 || bytes > Integer.MAX_VALUE)
+            throw new IllegalArgumentException(String.format("a bank cannot hold %d boards of %d cards", size, cards));
+
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(0, MAGIC);
+        buffer.put(4, (byte) VERSION);
+        buffer.put(5, (byte) cards);
+        buffer.put(6, (byte) recordSize);
+        buffer.putLong(8, size);
+        return new PuzzleBank(channel, buffer, true);
+    }
+
+    /**
+     * Opens an existing bank for reading. The header must describe a valid board size, and the file must be exactly
+     * as long as the header says, so that no board can be read from past its end.
+     * @param file the bank file
+     * @return the bank
+     * @throws IOException if the file cannot be read or is not a bank
+     */
+    public static PuzzleBank open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long length = channel.size();
+            if (length < HEADER_SIZE || length > Integer.MAX_VALUE)
+                throw new IOException("not a Set puzzle bank");
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.getInt(0) != MAGIC)
+                throw new IOException("not a Set puzzle bank");
+            if (buffer.get(4) != VERSION)
+                throw new IOException(String.format("unsupported puzzle bank version: %d", buffer.get(4)));
+
+            int cards = buffer.get(5);
+            int recordSize = buffer.get(6);
+            long size = buffer.getLong(8);
+            if (cards < 1 || cards > MAX_CARDS || recordSize != recordSize(cards))
+                throw new IOException(String.format("corrupt puzzle bank: %d cards per board in %d bytes", cards, recordSize));
+            if (size < 0 || size != (length - HEADER_SIZE) / recordSize || (length - HEADER_SIZE) % recordSize != 0)
+                throw new IOException(String.format("corrupt puzzle bank: %d boards of %d bytes in a file of %d bytes",
+                        size, recordSize, length));
+            return new PuzzleBank(channel, buffer, false);
+        }
+        catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the number of cards in every board
+     */
+    public int getCards() {
+        return cards;
+    }
+
+    /**
+     * @return the number of boards in the bank
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Reads a board.
+     * @param n the number of the board, from 0 to size() - 1
+     * @param board receives the board's card indices, in increasing order
+     */
+    public void get(long n, int[] board) {
+        long rank = getRank(n);
+        if (rank < 0 || rank >= BINOMIAL[81][cards])
+            throw new IllegalStateException(String.format("puzzle %d is corrupt: rank %d", n, rank));
+        unrank(rank, cards, board);
+    }
+
+    /**
+     * @param n the number of the board, from 0 to size() - 1
+     * @return the board's card indices, in increasing order
+     */
+    public int[] get(long n) {
+        int[] board = new int[cards];
+        get(n, board);
+        return board;
+    }
+
+    /**
+     * @param n the number of the board, from 0 to size() - 1
+     * @return the board's rank, as computed by rank()
+     */
+    public long getRank(long n) {
+        int position = position(n);
+        long rank = 0;
+        for (int b = recordSize - 1; b >= 0; b--)
+            rank = rank << 8 | (buffer.get(position + b) & 0xFF);
+        return rank;
+    }
+
+    /**
+     * Writes a board.
+     * @param n the number of the board, from 0 to size() - 1
+     * @param rank the board's rank, as computed by rank()
+     */
+    public void put(long n, long rank) {
+        int position = position(n);
+        for (int b = 0; b < recordSize; b++, rank >>>= 8)
+            buffer.put(position + b, (byte) rank);
+    }
+
+    /**
+     * Flushes a bank being written to disk and closes it.
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (writable)
+            buffer.force();
+        channel.close();
+    }
+
+    /**
+     * @param board card indices, in increasing order
+     * @return the board's rank in the combinatorial number system, from 0 to C(81, board.length) - 1
+     */
+    public static long rank(int[] board) {
+        long rank = 0;
+        for (int i = 0; i < board.length; i++)
+            rank += BINOMIAL[board[i]][i + 1];
+        return rank;
+    }
+
+    /**
+     * Turns a rank back into a board.
+     * @param rank the rank, as computed by rank()
+     * @param cards the number of cards in the board
+     * @param board receives the card indices, in increasing order
+     */
+    public static void unrank(long rank, int cards, int[] board) {
+        int c = 81;
+        for (int i = cards - 1; i >= 0; i--) {
+            // the largest card whose binomial still fits; each card is below the one after it
+            do {
+                c--;
+            } while (BINOMIAL[c][i + 1] > rank);
+            board[i] = c;
+            rank -= BINOMIAL[c][i + 1];
+        }
+    }
+
+    /**
+     * @return the number of bytes needed to store every rank of a board of the given size
+     */
+    private static int recordSize(int cards) {
+        int bits = 64 - Long.numberOfLeadingZeros(BINOMIAL[81][cards] - 1);
+        return Math.max(1, (bits + 7) / 8);
+    }
+
+    private int position(long n) {
+        if (n < 0 || n >= size)
+            throw new IndexOutOfBoundsException(String.format("no puzzle %d in a bank of %d", n, size));
+        return (int) (HEADER_SIZE + n * recordSize);
+    }
+}
@@ -0,0 +1,201 @@
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Generates random boards with an exact number of sets, such as the 12-card boards with 6 sets of a daily puzzle,
+ * or with no set at all, and fills a PuzzleBank with them.
+ * <p>
+ * Boards are drawn as card indices, never as Deck or Board objects. Cards are drawn one at a time into an 81-bit
+ * mask, along with the mask of the cards that would complete a set with two cards already drawn. A new card
+ * outside that mask adds no set, so sets are only counted for the cards inside it, and a board is rejected as
+ * soon as it has more sets than wanted. Every board with the wanted number of sets is equally likely.
+ * The board comes out of the mask with its cards already in increasing order, ready to be ranked.
+ * <p>
+ * Boards are drawn uniformly and rejected until one hits the target, so a target costs as many draws as it is rare,
+ * and one rarer than about 1 in MAX_ATTEMPTS boards is not supported. A k-card board has C(k, 3) / 79 sets on
+ * average, and the counts around that are drawn within a few dozen attempts (1 in 43 for 12 cards with 6 sets).
+ * Further out every extra set is a few times rarer: 12 cards with 10 sets are about 1 in 37,000, with 12 sets about
+ * 1 in 700,000. Set-free boards are supported up to MAX_SET_FREE_CARDS cards: by CapEnumerator's exact counts,
+ * 1 in 728,000 boards of 17 cards is set-free, but only 1 in 70 million of 18, and none of more than 20, so larger
+ * set-free targets are rejected up front.
+ */
+public class PuzzleGenerator {
+    public static final int MAX_SET_FREE_CARDS = 17;
+
+    private static final int BOARDS_PER_TASK = 1 << 16;
+    private static final int MAX_ATTEMPTS = 1 << 24;    // per board, before giving up on a target too rare to draw
+
+    private final int cards;
+    private final int sets;
+
+    /**
+     * Constructor.
+     * @param cards the number of cards in every board, 3 to PuzzleBank.MAX_CARDS
+     * @param sets the exact number of sets in every board, 0 for set-free boards of up to MAX_SET_FREE_CARDS cards
+     */
+    public PuzzleGenerator(int cards, int sets) {
+        if (cards < 3 || cards > PuzzleBank.MAX_CARDS)
+            throw new IllegalArgumentException(String.format("cards per board must be 3..%d: %d",
+                    PuzzleBank.MAX_CARDS, cards));
+        if (sets < 0 || sets > cards * (cards - 1) / 6)    // every pair of cards is in at most one set
+            throw new IllegalArgumentException(String.format("%d cards cannot hold %d sets", cards, sets));
+        if (sets == 0 && cards > MAX_SET_FREE_CARDS)
+            throw new IllegalArgumentException(String.format("set-free boards of %d cards are too rare to draw: %d cards at most",
+                    cards, MAX_SET_FREE_CARDS));
+        this.cards = cards;
+        this.sets = sets;
+    }
+
+    /**
+     * Draws a random board with the wanted number of sets.
+     * @param rng the random number generator
+     * @param board receives the card indices, in increasing order
+     * @return the number of boards drawn, including the rejected ones
+     */
+    public int next(SplittableRandom rng, int[] board) {
+        int[] drawn = new int[cards];
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            if (draw(rng, drawn, board))
+                return attempt;
+        }
+        throw new IllegalStateException(String.format("no board of %d cards with %d sets in %d attempts: too rare to draw",
+                cards, sets, MAX_ATTEMPTS));
+    }
+
+    /**
+     * Draws one board, which is rejected if it has the wrong number of sets.
+     * @param drawn scratch space for the cards in the order they are drawn
+     * @param board receives the card indices in increasing order, if the board is accepted
+     * @return whether the board has the wanted number of sets
+     */
+    private boolean draw(SplittableRandom rng, int[] drawn, int[] board) {
+        long chosenLo = 0, chosenHi = 0;        // the cards drawn
+        long completeLo = 0, completeHi = 0;    // the cards that would complete a set with two of them
+        int found = 0;
+
+        for (int n = 0; n < cards; ) {
+            int card = rng.nextInt(81);
+            long bit = 1L << card;              // shifts only use the low 6 bits
+            boolean high = card >= 64;
+            if (((high ? chosenHi : chosenLo) & bit) != 0)
+                continue;
+
+            boolean completes = ((high ? completeHi : completeLo) & bit) != 0;
+            if (completes && sets == 0)
+                return false;
+
+            // one pass over the cards drawn counts the sets this card completes, if it completes any, and adds the
+            // cards that would complete a set with it; the last card needs neither unless it completes a set
+            if (completes || n < cards - 1) {
+                int completed = 0;
+                for (int i = 0; i < n; i++) {
+                    int third = Card.third(card, drawn[i]);
+                    long thirdBit = 1L << third;
+                    if (third < 64) {
+                        if ((chosenLo & thirdBit) != 0)
+                            completed++;
+                        completeLo |= thirdBit;
+                    }
+                    else {
+                        if ((chosenHi & thirdBit) != 0)
+                            completed++;
+                        completeHi |= thirdBit;
+                    }
+                }
+                // each set is found twice, once from each of its other two cards
+                found += completed / 2;
+                if (found > sets)
+                    return false;
+            }
+            if (high)
+                chosenHi |= bit;
+            else
+                chosenLo |= bit;
+            drawn[n++] = card;
+        }
+        if (found != sets)
+            return false;
+
+        for (int n = 0; n < cards; n++) {
+            if (chosenLo != 0) {
+                board[n] = Long.numberOfTrailingZeros(chosenLo);
+                chosenLo &= chosenLo - 1;
+            }
+            else {
+                board[n] = 64 + Long.numberOfTrailingZeros(chosenHi);
+                chosenHi &= chosenHi - 1;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Fills every board of a bank, in parallel on the common fork-join pool.
+     * Each block of boards is drawn from its own generator, split from the seed up front, so a given seed always
+     * fills the bank the same way, whatever the number of cores.
+     * @param bank a bank open for writing, with the same number of cards per board as this generator
+     * @param seed the seed of the random number generator
+     * @return the number of boards drawn, including the rejected ones
+     */
+    public long fill(PuzzleBank bank, long seed) {
+        if (bank.getCards() != cards)
+            throw new IllegalArgumentException(String.format("the bank holds boards of %d cards, not %d",
+                    bank.getCards(), cards));
+        long size = bank.size();
+        int tasks = (int) ((size + BOARDS_PER_TASK - 1) / BOARDS_PER_TASK);
+        SplittableRandom root = new SplittableRandom(seed);
+        SplittableRandom[] rngs = new SplittableRandom[tasks];
+        for (int t = 0; t < tasks; t++)
+            rngs[t] = root.split();
+
+        return IntStream.range(0, tasks)
+                .parallel()
+                .mapToLong(t -> {
+                    int[] board = new int[cards];
+                    long attempts = 0;
+                    long end = Math.min(size, (t + 1L) * BOARDS_PER_TASK);
+                    for (long n = (long) t * BOARDS_PER_TASK; n < end; n++) {
+                        attempts += next(rngs[t], board);
+                        bank.put(n, PuzzleBank.rank(board));
+                    }
+                    return attempts;
+                })
+                .sum();
+    }
+
+    /**
+     * Fills a puzzle bank from the command line, then prints its first puzzle.
+     * @param args cards sets count file [seed]
+     * @throws IOException if the bank cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 4) {
+            System.err.println("usage: java PuzzleGenerator <cards> <sets> <count> <file> [seed]");
+            System.exit(2);
+        }
+        int cards = Integer.parseInt(args[0]);
+        int sets = Integer.parseInt(args[1]);
+        long count = Long.parseLong(args[2]);
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : System.nanoTime();
+
+        long start = System.nanoTime();
+        long attempts;
+        try (PuzzleBank bank = PuzzleBank.create(Paths.get(args[3]), cards, count)) {
+            attempts = new PuzzleGenerator(cards, sets).fill(bank, seed);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.println(String.format("%,d boards of %d cards with %d sets in %.1f s (%,.0f boards/s, 1 in %.1f drawn)",
+                count, cards, sets, seconds, count / seconds, (double) attempts / count));
+
+        try (PuzzleBank bank = PuzzleBank.open(Paths.get(args[3]))) {
+            if (bank.size() > 0) {
+                StringBuilder sb = new StringBuilder("puzzle 0:");
+                for (int card : bank.get(0))
+                    sb.append(' ').append(Card.of(card));
+                System.out.println(sb);
+            }
+        }
+    }
+}
@@ -0,0 +1,31 @@
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+
+/**
+ * Decides which set a simulated player takes from the board.
+ */
+public interface SelectionPolicy {
+
+    /**
+     * Takes the first set the Game finds.
+     */
+    SelectionPolicy FIRST = (game, rng) -> game.findSet();
+
+    /**
+     * Takes one of the sets on the board at random.
+     */
+    SelectionPolicy RANDOM = (game, rng) -> {
+        ArrayList<BoardSquare[]> sets = game.findAllSets();
+        if (sets.isEmpty())
+            return new BoardSquare[] {};
+        return sets.get(rng.nextInt(sets.size()));
+    };
+
+    /**
+     * Chooses the next set to take.
+     * @param game the Game being played.
+     * @param rng the random number generator of the thread running the Game.
+     * @return an Array of three BoardSquares that form a set, or an empty Array to ask for more cards instead.
+     */
+    BoardSquare[] choose(Game game, SplittableRandom rng);
+}
@@ -0,0 +1,195 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Checks SetServer over real sockets. Kept apart from SetDriver because the server needs virtual threads (JDK 21+),
+ * while the rest of the model builds and is checked on older JDKs.
+ */
+public class ServerDriver {
+    public static void main(String[] args) throws IOException, InterruptedException {
+        System.out.println("======== SERVER CHECKER ========");
+        try (SetServer server = new SetServer(0);
+             Socket alice = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+             Socket bob = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            server.start();
+            alice.setTcpNoDelay(true);
+            bob.setTcpNoDelay(true);
+            BufferedReader aliceIn = new BufferedReader(new InputStreamReader(alice.getInputStream()));
+            PrintWriter aliceOut = new PrintWriter(alice.getOutputStream(), true);
+            BufferedReader bobIn = new BufferedReader(new InputStreamReader(bob.getInputStream()));
+            PrintWriter bobOut = new PrintWriter(bob.getOutputStream(), true);
+
+            aliceOut.println("j driver");
+            bobOut.println("j driver");
+            System.out.println(aliceIn.readLine() + " / " + bobIn.readLine());
+
+            // alice looks for a set on the shared board, bob takes it
+            aliceOut.println("b");
+            String[] board = aliceIn.readLine().split(" ");
+            int cols = Integer.parseInt(board[3]);
+            int[] cards = new int[board.length - 4];
+            for (int i = 0; i < cards.length; i++)
+                cards[i] = Integer.parseInt(board[i + 4]);
+            found:
+            for (int i = 0; i < cards.length; i++)
+                for (int j = i + 1; j < cards.length; j++)
+                    for (int k = j + 1; k < cards.length; k++)
+                        if (Card.isSet(cards[i], cards[j], cards[k])) {
+                            for (int pos : new int[] {i, j, k}) {
+                                bobOut.println("s " + pos / cols + " " + pos % cols);
+                                System.out.print(bobIn.readLine() + " ");
+                            }
+                            break found;
+                        }
+            System.out.println();
+
+            int roundTrips = 10_000;
+            long start = System.nanoTime();
+            for (int i = 0; i < roundTrips; i++) {
+                aliceOut.println("b");
+                aliceIn.readLine();
+            }
+            System.out.println(String.format("round-trip: %.1f us", (System.nanoTime() - start) / 1e3 / roundTrips));
+            aliceOut.println("e");
+            System.out.println(aliceIn.readLine());
+        }
+
+        System.out.println("======== TABLE CHECKER ========");
+        try (SetServer server = new SetServer(0, 2);
+             Socket alice = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+             Socket bob = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            server.start();
+            BufferedReader aliceIn = new BufferedReader(new InputStreamReader(alice.getInputStream()));
+            PrintWriter aliceOut = new PrintWriter(alice.getOutputStream(), true);
+            BufferedReader bobIn = new BufferedReader(new InputStreamReader(bob.getInputStream()));
+            PrintWriter bobOut = new PrintWriter(bob.getOutputStream(), true);
+
+            // both start at the default table; one table of a limit of 2 is left
+            aliceOut.println("j a");
+            String joined = aliceIn.readLine();
+            bobOut.println("j b");
+            String refused = bobIn.readLine();
+            System.out.println(String.format("%s / %s, tables: %d", joined, refused, server.getTableCount()));
+
+            // once alice leaves, her table is dropped and bob can open his
+            aliceOut.println("e");
+            aliceIn.readLine();
+            long deadline = System.nanoTime() + 5_000_000_000L;
+            while (server.getTableCount() > 1 && System.nanoTime() < deadline)
+                Thread.sleep(1);
+            bobOut.println("j b");
+            System.out.println(String.format("%s, tables: %d", bobIn.readLine(), server.getTableCount()));
+
+            // a hundred players at the default table open only that one table
+            Socket[] crowd = new Socket[100];
+            for (int i = 0; i < crowd.length; i++)
+                crowd[i] = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+            for (Socket s : crowd) {
+                new PrintWriter(s.getOutputStream(), true).println("b");
+                new BufferedReader(new InputStreamReader(s.getInputStream())).readLine();
+            }
+            System.out.println(String.format("100 players at the default table, tables: %d", server.getTableCount()));
+            for (Socket s : crowd)
+                s.close();
+            bobOut.println("e");
+            bobIn.readLine();
+            deadline = System.nanoTime() + 5_000_000_000L;
+            while (server.getTableCount() > 0 && System.nanoTime() < deadline)
+                Thread.sleep(1);
+            System.out.println(String.format("everyone left, tables: %d", server.getTableCount()));
+        }
+
+        System.out.println("======== GAME OVER CHECKER ========");
+        try (SetServer server = new SetServer(0);
+             Socket alice = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+             Socket mallory = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            server.start();
+            BufferedReader aliceIn = new BufferedReader(new InputStreamReader(alice.getInputStream()));
+            PrintWriter aliceOut = new PrintWriter(alice.getOutputStream(), true);
+
+            aliceOut.println("n");
+            String early = aliceIn.readLine();
+
+            // alice plays the table's game to the end: take a set if there is one, else add 3
+            int sets = 0;
+            while (true) {
+                aliceOut.println("b");
+                String[] board = aliceIn.readLine().split(" ");
+                if (board[1].equals("0") && board[2].equals("0"))
+                    break;
+                int cols = Integer.parseInt(board[3]);
+                int[] cards = new int[board.length - 4];
+                for (int i = 0; i < cards.length; i++)
+                    cards[i] = Integer.parseInt(board[i + 4]);
+                int[] set = null;
+                for (int i = 0; i < cards.length && set == null; i++)
+                    for (int j = i + 1; j < cards.length && set == null; j++)
+                        for (int k = j + 1; k < cards.length && set == null; k++)
+                            if (Card.isSet(cards[i], cards[j], cards[k]))
+                                set = new int[] {i, j, k};
+                if (set == null) {
+                    aliceOut.println("a");
+                    aliceIn.readLine();
+                    continue;
+                }
+                for (int pos : set) {
+                    aliceOut.println("s " + pos / cols + " " + pos % cols);
+                    aliceIn.readLine();
+                }
+                sets++;
+            }
+            aliceOut.println("n");
+            String dealt = aliceIn.readLine();
+            aliceOut.println("b");
+            String remaining = aliceIn.readLine().split(" ")[1];
+            System.out.println(String.format("%s, then %d sets, then %s, %s cards left", early, sets, dealt, remaining));
+
+            // mallory sends a line that never ends
+            mallory.getOutputStream().write(("s " + "9".repeat(100_000) + "\n").getBytes(StandardCharsets.US_ASCII));
+            BufferedReader malloryIn = new BufferedReader(new InputStreamReader(mallory.getInputStream()));
+            System.out.println(String.format("%s, then %s", malloryIn.readLine(), malloryIn.readLine()));
+        }
+
+        System.out.println("======== IDLE CONNECTION CHECKER ========");
+        try (SetServer server = new SetServer(0)) {
+            server.start();
+            int idle = 3000;
+            long before = usedHeap();
+            Socket[] clients = new Socket[idle];
+            for (int i = 0; i < idle; i++) {
+                clients[i] = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+                // one round trip, so that the server has accepted the connection and seated the player
+                clients[i].getOutputStream().write("l\n".getBytes(StandardCharsets.US_ASCII));
+                InputStream in = clients[i].getInputStream();
+                while (in.read() != '\n')
+                    ;
+            }
+            long after = usedHeap();
+            // both ends of every connection live in this JVM, so this is an upper bound on the server's share
+            System.out.println(String.format("%d idle connections, heap per connection: %.1f KB",
+                    idle, (after - before) / 1024.0 / idle));
+            for (Socket s : clients)
+                s.close();
+        }
+    }
+
+    /**
+     * @return the heap in use once garbage is collected, in bytes
+     */
+    private static long usedHeap() throws InterruptedException {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
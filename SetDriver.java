@@ -1,5 +1,26 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import javax.management.JMX;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
 public class SetDriver {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException, JMException {
 //        System.out.println("======== CARD  TESTER ========");
 //        Card c1 = new Card(Card.Color.GREEN, Card.Shading.STRIPED, Card.Shape.DIAMOND, Card.Number.ONE);
 //        Card c2 = new Card(Card.Color.RED, Card.Shading.OUTLINED, Card.Shape.OVAL, Card.Number.TWO);
@@ -34,6 +55,849 @@ public class SetDriver {
 //
 //        System.out.println(b);
 
+        System.out.println("======== ISSET CHECKER ========");
+        Card[] all = new Card[81];
+        for (Card.Color color : Card.Color.values())
+            for (Card.Shading shading : Card.Shading.values())
+                for (Card.Shape shape : Card.Shape.values())
+                    for (Card.Number number : Card.Number.values()) {
+                        Card c = Card.of(color, shading, shape, number);
+                        all[c.getIndex()] = c;
+                        if (Card.of(c.getIndex()) != c)
+                            System.out.println("not canonical: " + c);
+                    }
+
+        int triples = 0, sets = 0, mismatches = 0;
+        for (int i = 0; i < all.length; i++) {
+            for (int j = i + 1; j < all.length; j++) {
+                for (int k = j + 1; k < all.length; k++) {
+                    boolean expected = Card.isSetByAttribute(all[i], all[j], all[k]);
+                    if (Card.isSet(all[i], all[j], all[k]) != expected)
+                        mismatches++;
+                    if ((Card.third(i, j) == k) != expected)
+                        mismatches++;
+                    if (expected)
+                        sets++;
+                    triples++;
+                }
+            }
+        }
+        System.out.println(String.format("triples: %d, sets: %d, mismatches: %d", triples, sets, mismatches));
+
+        System.out.println("======== DECK CHECKER ========");
+        mismatches = 0;
+        for (long seed = 0; seed < 1000; seed++) {
+            Deck eager = new Deck(new SplittableRandom(seed), false);
+            Deck lazy = new Deck(new SplittableRandom(seed), true);
+            while (!eager.isEmpty())
+                if (eager.getTopCard().getIndex() != lazy.getTopCard().getIndex())
+                    mismatches++;
+        }
+        System.out.println(String.format("lazy vs eager mismatches: %d", mismatches));
+
+        System.out.println("======== SET INDEX CHECKER ========");
+        int moves = 0;
+        mismatches = 0;
+        for (int game = 0; game < 1000; game++) {
+            Game sim = new Game();
+            while (true) {
+                Board b = sim.getBoard();
+                int count = 0;
+                for (int i = 0; i < b.numRows() * b.numCols(); i++)
+                    for (int j = i + 1; j < b.numRows() * b.numCols(); j++)
+                        for (int k = j + 1; k < b.numRows() * b.numCols(); k++)
+                            if (Card.isSet(b.getBoardSquare(i / b.numCols(), i % b.numCols()).getCard(),
+                                           b.getBoardSquare(j / b.numCols(), j % b.numCols()).getCard(),
+                                           b.getBoardSquare(k / b.numCols(), k % b.numCols()).getCard()))
+                                count++;
+                if (count != sim.countSets())
+                    mismatches++;
+                moves++;
+
+                BoardSquare[] set = sim.findSet();
+                if (set.length == 3) {
+                    for (BoardSquare bs : set)
+                        sim.addToSelected(bs.getRowPos(), bs.getColPos());
+                    sim.testSelected();
+                }
+                else if (!sim.outOfCards())
+                    sim.add3();
+                else
+                    break;
+            }
+        }
+        System.out.println(String.format("moves: %d, mismatches: %d", moves, mismatches));
+
+        // selecting one square three times must not make a set, and a board compressed with a square listed twice
+        // must only lose it once, leaving the index and the hints on the board
+        mismatches = 0;
+        int repeats = 0;
+        SplittableRandom fuzz = new SplittableRandom(2);
+        for (long seed = 0; seed < 2000; seed++) {
+            Game sim = new Game(seed);
+            while (true) {
+                Board b = sim.getBoard();
+                if (fuzz.nextInt(10) == 0 && b.numCards() > 0) {
+                    int row = fuzz.nextInt(b.numRows()), col = fuzz.nextInt(b.numCols());
+                    repeats++;
+                    if (!sim.addToSelected(row, col) || sim.addToSelected(row, col) || sim.addToSelected(row, col)
+                            || sim.numSelected() != 1)
+                        mismatches++;
+                    sim.removeSelected(row, col);
+                }
+                if (fuzz.nextInt(50) == 0 && b.numCards() > 0) {
+                    Board copy = new Board(b);
+                    BoardSquare first = copy.getBoardSquare(0, 0);
+                    int before = copy.numCards();
+                    copy.compressBoard(new ArrayList<>(Arrays.asList(first, first, first)));
+                    if (copy.numCards() != before - 1 || copy.getBoardSquare(first.getCard()) != null)
+                        mismatches++;
+                }
+
+                BoardSquare[] set = sim.findSet();
+                for (BoardSquare bs : set)
+                    if (b.getBoardSquare(bs.getCard()) != bs)
+                        mismatches++;
+                if (set.length == 3) {
+                    for (BoardSquare bs : set)
+                        sim.addToSelected(bs.getRowPos(), bs.getColPos());
+                    if (!sim.testSelected())
+                        mismatches++;
+                }
+                else if (!sim.outOfCards())
+                    sim.add3();
+                else
+                    break;
+            }
+        }
+        System.out.println(String.format("repeated selections: %d, mismatches: %d", repeats, mismatches));
+
+        System.out.println("======== SAVE/RESTORE CHECKER ========");
+        ByteBuffer buf = ByteBuffer.allocate(128);
+        mismatches = 0;
+        int maxBytes = 0;
+        for (long seed = 0; seed < 1000; seed++) {
+            Game original = new Game(seed);
+            Game restored = null;
+            for (int move = 0; ; move++) {
+                // save with one card selected, then keep playing both games side by side
+                if (move == seed % 10) {
+                    original.addToSelected(1, 1);
+                    buf.clear();
+                    original.writeTo(buf);
+                    maxBytes = Math.max(maxBytes, buf.position());
+                    buf.flip();
+                    restored = new Game();
+                    restored.readFrom(buf);
+                    if (restored.numSelected() != 1 || !restored.getBoard().getBoardSquare(1, 1).isCurrentlySelected())
+                        mismatches++;
+                    original.removeSelected(1, 1);
+                    restored.removeSelected(1, 1);
+                }
+                if (restored != null && (!restored.toString().equals(original.toString())
+                        || restored.countSets() != original.countSets()
+                        || restored.cardsRemaining() != original.cardsRemaining()))
+                    mismatches++;
+
+                boolean more = false;
+                for (Game sim : restored == null ? new Game[] {original} : new Game[] {original, restored}) {
+                    BoardSquare[] set = sim.findSet();
+                    if (set.length == 3) {
+                        for (BoardSquare bs : set)
+                            sim.addToSelected(bs.getRowPos(), bs.getColPos());
+                        sim.testSelected();
+                        more = true;
+                    }
+                    else if (!sim.outOfCards()) {
+                        sim.add3();
+                        more = true;
+                    }
+                }
+                if (!more)
+                    break;
+            }
+        }
+        System.out.println(String.format("round-trip mismatches: %d, largest save: %d bytes", mismatches, maxBytes));
+
+        // saving a game must not change how it plays on
+        mismatches = 0;
+        for (long seed = 0; seed < 1000; seed++) {
+            Game saved = new Game(seed), unsaved = new Game(seed);
+            buf.clear();
+            saved.writeTo(buf);
+            byte[] firstSave = Arrays.copyOf(buf.array(), buf.position());
+            buf.clear();
+            saved.writeTo(buf);
+            if (!Arrays.equals(firstSave, Arrays.copyOf(buf.array(), buf.position())))
+                mismatches++;
+            while (true) {
+                if (!saved.toString().equals(unsaved.toString()))
+                    mismatches++;
+                BoardSquare[] set = saved.findSet();
+                if (set.length == 3) {
+                    for (Game sim : new Game[] {saved, unsaved}) {
+                        for (BoardSquare bs : set)
+                            sim.addToSelected(bs.getRowPos(), bs.getColPos());
+                        sim.testSelected();
+                    }
+                }
+                else if (!saved.outOfCards()) {
+                    saved.add3();
+                    unsaved.add3();
+                }
+                else
+                    break;
+            }
+        }
+
+        // a corrupt save is rejected before the game it is read into changes
+        Game target = new Game(5);
+        target.addToSelected(0, 0);
+        String before = target.toString() + target.getSelected() + target.cardsRemaining();
+        buf.clear();
+        new Game(6).writeTo(buf);
+        byte[] good = Arrays.copyOf(buf.array(), buf.position());
+        int deckSize = good[1] & 0xFF, boardStart = 2 + deckSize;
+        byte[][] corrupt = new byte[11][];
+        for (int i = 0; i < corrupt.length; i++)
+            corrupt[i] = good.clone();
+        corrupt[0][0] = 9;                                  // unknown version
+        corrupt[1][2] = (byte) 81;                          // card out of range in the deck
+        corrupt[2][boardStart + 1] = (byte) -1;             // card out of range on the board
+        corrupt[3][3] = corrupt[3][2];                      // the same card twice in the deck
+        corrupt[4][boardStart + 1] = corrupt[4][2];         // the same card in the deck and on the board
+        corrupt[5][boardStart] = (byte) 24;                 // more cards than the board holds
+        corrupt[6][1] = (byte) 200;                         // more cards than the deck holds
+        corrupt[7][boardStart + 14] = (byte) 0x10;          // slot 12, past the last card, selected
+        corrupt[8] = Arrays.copyOf(good, good.length + 1);  // a selected card the flags don't mention
+        corrupt[8][boardStart + 16] = 1;
+        corrupt[9][boardStart] = 13;                        // a board that is not whole columns
+        corrupt[10] = Arrays.copyOf(good, good.length - 2); // cut short
+        int rejected = 0;
+        for (byte[] save : corrupt) {
+            try {
+                target.readFrom(ByteBuffer.wrap(save));
+            }
+            catch (IllegalArgumentException e) {
+                rejected++;
+            }
+            if (!before.equals(target.toString() + target.getSelected() + target.cardsRemaining()))
+                mismatches++;
+        }
+        System.out.println(String.format("save leaves the game unchanged, corrupt saves rejected: %d/%d, mismatches: %d",
+                rejected, corrupt.length, mismatches));
+
+        System.out.println("======== SET ENGINE CHECKER ========");
+        mismatches = 0;
+        for (int i = 0; i < 81; i++) {
+            if (SetEngine.CLASSIC.ordinal(SetEngine.pack(Card.of(i))) != i)
+                mismatches++;
+            for (int j = 0; j < 81; j++)
+                if (i != j && SetEngine.CLASSIC.ordinal(SetEngine.CLASSIC.third(SetEngine.pack(Card.of(i)),
+                                                                               SetEngine.pack(Card.of(j)))) != Card.third(i, j))
+                    mismatches++;
+        }
+        for (long seed = 0; seed < 100; seed++) {
+            Game classic = new Game(seed);
+            long[] packed = new long[classic.numCardsOnBoard()];
+            for (int row = 0; row < 3; row++)
+                for (int col = 0; col < classic.getBoard().numCols(); col++)
+                    packed[col * 3 + row] = SetEngine.pack(classic.getBoard().getBoardSquare(row, col).getCard());
+            if (SetEngine.CLASSIC.countSets(packed) != classic.countSets())
+                mismatches++;
+        }
+        for (int d = 5; d <= 8; d++) {
+            SetEngine engine = new SetEngine(d);
+            long[] board = engine.deal(d == 5 ? 243 : 600, new SplittableRandom(d));
+            long start = System.nanoTime();
+            long count = engine.countSets(board);
+            long nanos = System.nanoTime() - start;
+            int[] set = engine.findSet(board);
+            if (count != engine.findAllSets(board).size()
+                    || (count > 0) != (set.length == 3)
+                    || (set.length == 3 && !SetEngine.isSet(board[set[0]], board[set[1]], board[set[2]])))
+                mismatches++;
+            System.out.println(String.format("d=%d, %d cards: %d sets, counted in %.2f ms", d, board.length, count, nanos / 1e6));
+        }
+        System.out.println(String.format("engine mismatches: %d", mismatches));
+        // 3^20 cards do not fit in an int array, so a deal that needs the whole deck shuffled is refused up front
+        boolean refused = false;
+        try {
+            new SetEngine(20).deal(1_000_000_000, new SplittableRandom(1));
+        }
+        catch (IllegalArgumentException e) {
+            refused = true;
+        }
+        System.out.println(String.format("d=20 full shuffle refused: %b, d=21 sampled deal: %d cards",
+                refused, new SetEngine(21).deal(500, new SplittableRandom(1)).length));
+
+        System.out.println("======== SYMMETRY CHECKER ========");
+        mismatches = 0;
+        // every orbit of sets must be as large as its number of members
+        HashMap<String, Integer> orbits = new HashMap<>();
+        HashMap<String, Integer> orbitSizes = new HashMap<>();
+        for (int i = 0; i < 81; i++)
+            for (int j = i + 1; j < 81; j++)
+                if (Card.third(i, j) > j) {
+                    Card[] set = {Card.of(i), Card.of(j), Card.of(Card.third(i, j))};
+                    String key = Arrays.toString(BoardSymmetry.canonicalMask(set));
+                    orbits.merge(key, 1, Integer::sum);
+                    orbitSizes.put(key, BoardSymmetry.orbitSize(set));
+                }
+        for (String key : orbits.keySet())
+            if (!orbits.get(key).equals(orbitSizes.get(key)))
+                mismatches++;
+        System.out.println(String.format("orbits of sets: %d %s", orbits.size(), orbits.values()));
+
+        // a board and its image under a random symmetry must have the same canonical form and hash
+        SplittableRandom symmetries = new SplittableRandom(3);
+        long nanos = 0;
+        int boards = 10_000;
+        for (int b = 0; b < boards; b++) {
+            Board board = new Game(b).getBoard();
+            Card[] cards = new Card[12];
+            for (int i = 0; i < 12; i++)
+                cards[i] = board.getBoardSquare(i % 3, i / 3).getCard();
+
+            int[] perm = {0, 1, 2, 3};
+            for (int i = 3; i > 0; i--) {
+                int j = symmetries.nextInt(i + 1);
+                int t = perm[i]; perm[i] = perm[j]; perm[j] = t;
+            }
+            int[] shift = {symmetries.nextInt(3), symmetries.nextInt(3), symmetries.nextInt(3), symmetries.nextInt(3)};
+            int[] flip = {symmetries.nextInt(2), symmetries.nextInt(2), symmetries.nextInt(2), symmetries.nextInt(2)};
+            Card[] image = new Card[12];
+            for (int i = 0; i < 12; i++) {
+                int index = cards[i].getIndex();
+                int[] digits = {index / 27, index / 9 % 3, index / 3 % 3, index % 3};
+                int mapped = 0;
+                for (int a = 0; a < 4; a++) {
+                    int v = (digits[perm[a]] * (flip[a] == 1 ? 2 : 1) + shift[a]) % 3;
+                    mapped = mapped * 3 + v;
+                }
+                image[i] = Card.of(mapped);
+            }
+
+            long start = System.nanoTime();
+            long[] canonical = BoardSymmetry.canonicalMask(cards);
+            nanos += System.nanoTime() - start;
+            if (!Arrays.equals(canonical, BoardSymmetry.canonicalMask(image))
+                    || BoardSymmetry.orbitHash(cards) != BoardSymmetry.orbitHash(image)
+                    || BoardSymmetry.orbitSize(cards) != BoardSymmetry.orbitSize(image))
+                mismatches++;
+        }
+        System.out.println(String.format("12-card canonical form: %.1f us, mismatches: %d", nanos / 1e3 / boards, mismatches));
+
+        // a board and its image under a random affine map, which may mix attributes, must have the same affine
+        // canonical form and stabilizer
+        mismatches = 0;
+        for (int b = 0; b < 1000; b++) {
+            Board board = new Game(b).getBoard();
+            int[] cards = new int[12];
+            for (int i = 0; i < 12; i++)
+                cards[i] = board.getBoardSquare(i % 3, i / 3).getCard().getIndex();
+
+            int[][] matrix = new int[4][4];
+            boolean invertible = false;
+            while (!invertible) {
+                for (int[] row : matrix)
+                    for (int a = 0; a < 4; a++)
+                        row[a] = symmetries.nextInt(3);
+                boolean[] hit = new boolean[81];
+                invertible = true;
+                for (int x = 0; x < 81; x++) {
+                    int y = affine(matrix, new int[4], x);
+                    if (hit[y])
+                        invertible = false;
+                    hit[y] = true;
+                }
+            }
+            int[] shift = {symmetries.nextInt(3), symmetries.nextInt(3), symmetries.nextInt(3), symmetries.nextInt(3)};
+            int[] image = new int[12];
+            for (int i = 0; i < 12; i++)
+                image[i] = affine(matrix, shift, cards[i]);
+
+            long[] canonical = new long[2], imageCanonical = new long[2];
+            if (BoardSymmetry.affineCanonicalize(cards, 12, canonical)
+                    != BoardSymmetry.affineCanonicalize(image, 12, imageCanonical)
+                    || !Arrays.equals(canonical, imageCanonical))
+                mismatches++;
+        }
+        System.out.println(String.format("affine canonical forms: 1000 boards, mismatches: %d", mismatches));
+
+        System.out.println("======== CAP CHECKER ========");
+        // a run killed in the middle of writing its checkpoint must resume as if it had stopped at the last full size
+        Path capFile = Files.createTempFile("caps", ".checkpoint");
+        Files.delete(capFile);
+        long[] smallCaps = new CapEnumerator(12, capFile).run();
+        byte[] capBytes = Files.readAllBytes(capFile);
+        Files.write(capFile, Arrays.copyOf(capBytes, capBytes.length - 20));
+        long capStart = System.nanoTime();
+        long[] caps = new CapEnumerator(CapEnumerator.MAX_CAP + 1, capFile).run();
+        double capSeconds = (System.nanoTime() - capStart) / 1e9;
+        long[] resumed = new CapEnumerator(CapEnumerator.MAX_CAP + 1, capFile).run();
+        mismatches = 0;
+        if (!Arrays.equals(smallCaps, Arrays.copyOf(caps, 13)) || !Arrays.equals(caps, resumed))
+            mismatches++;
+        // every triple of cards but the 1080 sets is a cap
+        if (caps[3] != 81 * 80 * 79 / 6 - 1080)
+            mismatches++;
+        Files.delete(capFile);
+        System.out.println(String.format("largest cap: %d cards (%d of them), 21-card caps: %d, up to 21 cards in %.1f s, mismatches: %d",
+                CapEnumerator.MAX_CAP, caps[CapEnumerator.MAX_CAP], caps[CapEnumerator.MAX_CAP + 1], capSeconds, mismatches));
+
+        System.out.println("======== ENDGAME CHECKER ========");
+        mismatches = 0;
+        int cleared = 0;
+        long[] solveTimes = new long[1000];
+        EndgameSolver solver = new EndgameSolver();
+        SplittableRandom picks = new SplittableRandom(5);
+        for (long seed = 0; seed < 1000; seed++) {
+            Game sim = new Game(seed);
+            while (!sim.outOfCards()) {
+                ArrayList<BoardSquare[]> choices = sim.findAllSets();
+                if (choices.isEmpty()) {
+                    sim.add3();
+                    continue;
+                }
+                for (BoardSquare bs : choices.get(picks.nextInt(choices.size())))
+                    sim.addToSelected(bs.getRowPos(), bs.getColPos());
+                sim.testSelected();
+            }
+
+            long start = System.nanoTime();
+            ArrayList<BoardSquare[]> sequence = solver.solve(sim.getBoard());
+            solveTimes[(int) seed] = System.nanoTime() - start;
+            if (sequence.size() * 3 == sim.numCardsOnBoard())
+                cleared++;
+
+            // playing the sequence must work, and an optimal one leaves no set behind
+            for (BoardSquare[] set : sequence) {
+                for (BoardSquare bs : set)
+                    sim.addToSelected(bs.getRowPos(), bs.getColPos());
+                if (!sim.testSelected())
+                    mismatches++;
+            }
+            if (sim.hasSet())
+                mismatches++;
+        }
+        Arrays.sort(solveTimes);
+        System.out.println(String.format("endgames cleared: %d/1000, solve p50: %.3f ms, p99: %.3f ms, max: %.2f ms, mismatches: %d",
+                cleared, solveTimes[500] / 1e6, solveTimes[990] / 1e6, solveTimes[999] / 1e6, mismatches));
+
+        // the hardest endgames: 21 of the 27 cards of one color, an affine 3-space and the densest in sets
+        SplittableRandom dense = new SplittableRandom(6);
+        Board denseBoard = new Board(new Deck(0));
+        solveTimes = new long[200];
+        for (int trial = 0; trial < solveTimes.length; trial++) {
+            int[] pool = new int[27];
+            for (int i = 0; i < pool.length; i++)
+                pool[i] = i;
+            for (int i = pool.length - 1; i > 0; i--) {
+                int j = dense.nextInt(i + 1);
+                int swap = pool[i];
+                pool[i] = pool[j];
+                pool[j] = swap;
+            }
+            denseBoard.restore(Arrays.copyOf(pool, Board.CAPACITY), 0);
+            long start = System.nanoTime();
+            solver.solve(denseBoard);
+            solveTimes[trial] = System.nanoTime() - start;
+        }
+        Arrays.sort(solveTimes);
+        System.out.println(String.format("dense 21-card endgames: p50: %.3f ms, p99: %.3f ms, max: %.2f ms (budget: 10 ms)",
+                solveTimes[100] / 1e6, solveTimes[198] / 1e6, solveTimes[199] / 1e6));
+
+        System.out.println("======== JOURNAL CHECKER ========");
+        Path journalFile = Files.createTempFile("set", ".journal");
+        ArrayList<String> expected = new ArrayList<>();   // the Game after every event
+        SplittableRandom guesses = new SplittableRandom(1);
+        int restores = 0;
+        try (GameJournal journal = new GameJournal(journalFile)) {
+            for (int game = 0; game < 100; game++) {
+                Game sim = new Game(game);
+                sim.setJournal(journal);
+                expected.add(sim.toString());
+                while (true) {
+                    if (guesses.nextInt(50) == 0) {
+                        // loading a save replaces the Game wholesale, which the journal must record as a fresh DEAL
+                        ByteBuffer save = ByteBuffer.allocate(128);
+                        new Game(guesses.nextLong()).writeTo(save);
+                        save.flip();
+                        sim.readFrom(save);
+                        expected.add(sim.toString());
+                        restores++;
+                    }
+                    BoardSquare[] set = sim.findSet();
+                    if (guesses.nextInt(4) == 0 && sim.getBoard().numCols() >= 3) {
+                        // a wrong guess: select a card, change our mind, then submit three arbitrary cards
+                        sim.addToSelected(0, 0);
+                        expected.add(sim.toString());
+                        sim.removeSelected(0, 0);
+                        expected.add(sim.toString());
+                        for (int col = 0; col < 3; col++) {
+                            sim.addToSelected(col, col);
+                            expected.add(sim.toString());
+                        }
+                        sim.testSelected();
+                    }
+                    else if (set.length == 3) {
+                        for (BoardSquare bs : set) {
+                            sim.addToSelected(bs.getRowPos(), bs.getColPos());
+                            expected.add(sim.toString());
+                        }
+                        sim.testSelected();
+                    }
+                    else if (!sim.outOfCards())
+                        sim.add3();
+                    else
+                        break;
+                    expected.add(sim.toString());
+                    if (sim.numCardsOnBoard() < 3)
+                        break;
+                }
+                sim.setJournal(null);
+            }
+
+            long events = 10_000_000;
+            Game sim = new Game(0);
+            long start = System.nanoTime();
+            for (long i = 0; i < events; i++)
+                journal.append(GameJournal.SELECT, 1, 2, 0, sim.cardsRemaining());
+            System.out.println(String.format("append rate: %.1f M events/s", events * 1e3 / (System.nanoTime() - start)));
+        }
+        mismatches = 0;
+        for (int event = 1; event <= expected.size(); event += 37)
+            if (!GameJournal.replay(journalFile, event).toString().equals(expected.get(event - 1)))
+                mismatches++;
+        System.out.println(String.format("events: %d, restores: %d, replay mismatches: %d",
+                expected.size(), restores, mismatches));
+        Files.delete(journalFile);
+
+        // the server needs virtual threads (JDK 21+), so it is checked on its own by ServerDriver
+
+        System.out.println("======== ANALYZER CHECKER ========");
+        mismatches = 0;
+        int published = 0;
+        ArrayList<Runnable> mailbox = new ArrayList<>();  // stands in for Platform.runLater
+        try (BoardAnalyzer analyzer = new BoardAnalyzer(2, r -> { synchronized (mailbox) { mailbox.add(r); } })) {
+            for (long seed = 0; seed < 200; seed++) {
+                Game sim = new Game(seed);
+                Board live = sim.getBoard();
+                BoardSquare[] first = live.findSet();
+                int[] expectedSlots = new int[first.length];
+                for (int i = 0; i < first.length; i++)
+                    expectedSlots[i] = live.slotOf(first[i]);
+
+                // every other hint is overtaken by a move, and must then be dropped
+                int[][] hint = new int[1][];
+                Future<?> future = analyzer.submit(live, BoardSnapshot::findSet, result -> hint[0] = result);
+                boolean moved = seed % 2 == 1 && first.length == 3;
+                if (moved) {
+                    for (BoardSquare bs : first)
+                        sim.addToSelected(bs.getRowPos(), bs.getColPos());
+                    sim.testSelected();
+                }
+                try {
+                    future.get();
+                } catch (InterruptedException | ExecutionException e) {
+                    throw new IllegalStateException(e);
+                }
+                synchronized (mailbox) {
+                    mailbox.forEach(Runnable::run);
+                    mailbox.clear();
+                }
+
+                if (hint[0] != null)
+                    published++;
+                if (moved ? hint[0] != null : hint[0] == null || !Arrays.equals(hint[0], expectedSlots))
+                    mismatches++;
+            }
+        }
+        System.out.println(String.format("hints published: %d/200, mismatches: %d", published, mismatches));
+
+        System.out.println("======== TERMINAL CHECKER ========");
+        mismatches = 0;
+        long diffBytes = 0, fullBytes = 0;
+        int frames = 0;
+        ByteArrayOutputStream terminal = new ByteArrayOutputStream();
+        PrintStream terminalOut = new PrintStream(terminal, true, StandardCharsets.UTF_8);
+        char[][] screen = new char[10][256];
+        byte[][] screenColors = new byte[10][256];
+        char[][] expectedScreen = new char[10][256];
+        byte[][] expectedColors = new byte[10][256];
+        for (long seed = 0; seed < 50; seed++) {
+            Game sim = new Game(seed);
+            TerminalRenderer renderer = new TerminalRenderer(terminalOut);
+            boolean firstFrame = true;
+            while (true) {
+                terminal.reset();
+                renderer.render(sim.getBoard());
+                String frame = terminal.toString(StandardCharsets.UTF_8);
+
+                // the screen the renderer built up must show exactly what Board.toString() prints
+                replayAnsi(frame, screen, screenColors);
+                for (char[] line : expectedScreen)
+                    Arrays.fill(line, (char) 0);
+                replayAnsi(sim.getBoard().toString(), expectedScreen, expectedColors);
+                for (int line = 0; line < 3; line++)
+                    for (int col = 0; col < 256; col++)
+                        if (screen[line][col] != expectedScreen[line][col]
+                                || expectedScreen[line][col] != 0 && screenColors[line][col] != expectedColors[line][col])
+                            mismatches++;
+                if (!firstFrame) { // leave out the first frame of each game, which paints everything
+                    diffBytes += terminal.size();
+                    fullBytes += sim.getBoard().toString().getBytes(StandardCharsets.UTF_8).length;
+                    frames++;
+                }
+                firstFrame = false;
+
+                if (sim.outOfCards() && !sim.hasSet())
+                    break;
+                BoardSquare[] set = sim.findSet();
+                if (set.length == 0) {
+                    if (sim.cardsRemaining() < 3)
+                        break;
+                    sim.add3();
+                    continue;
+                }
+                for (BoardSquare bs : set)
+                    sim.addToSelected(bs.getRowPos(), bs.getColPos());
+                sim.testSelected();
+            }
+        }
+        System.out.println(String.format("frames: %d, bytes per move: %.0f diffed vs %.0f repainted, mismatches: %d",
+                frames, (double) diffBytes / frames, (double) fullBytes / frames, mismatches));
+
+        System.out.println("======== SCRIPT CHECKER ========");
+        StringBuilder script = new StringBuilder();
+        SplittableRandom typing = new SplittableRandom(11);
+        String[] verbs = {"s", "s", "s", "d", "l", "b"};
+        for (int i = 0; i < 1_000_000; i++) {
+            String verb = verbs[typing.nextInt(verbs.length)];
+            script.append(verb);
+            if (verb.equals("s") || verb.equals("d"))
+                script.append(' ').append(typing.nextInt(3)).append(' ').append(typing.nextInt(4));
+            script.append('\n');
+        }
+        byte[] scriptBytes = script.toString().getBytes(StandardCharsets.US_ASCII);
+        ByteArrayOutputStream replies = new ByteArrayOutputStream();
+        long start = System.nanoTime();
+        long commands = new GameScript(new ByteArrayInputStream(scriptBytes), replies, true).run(new Game(8));
+        long elapsed = System.nanoTime() - start;
+        ByteArrayOutputStream again = new ByteArrayOutputStream();
+        new GameScript(new ByteArrayInputStream(scriptBytes), again, true).run(new Game(8));
+        System.out.println(String.format("commands: %d, %.2f M commands/s, replies: %d bytes, deterministic: %b",
+                commands, commands / (elapsed / 1e3), replies.size(), Arrays.equals(replies.toByteArray(), again.toByteArray())));
+        // a byte order mark and a non-ASCII comment are skipped, not taken for the end of the script
+        byte[] utf8Script = "\uFEFF# s\u00e9lectionne la premi\u00e8re carte \u2713\ns 0 0\nd 0 0\ne\n".getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream utf8Replies = new ByteArrayOutputStream();
+        new GameScript(new ByteArrayInputStream(utf8Script), utf8Replies, true).run(new Game(8));
+        System.out.println("non-ASCII script replies: " + utf8Replies.toString(StandardCharsets.US_ASCII).replace('\n', ' '));
+
+        System.out.println("======== SIMULATOR CHECKER ========");
+        // the same seed plays the same games on any number of threads; three tasks, the last one short
+        int simGames = 2 * Simulator.GAMES_PER_TASK + 500;
+        SimulationResult common = Simulator.run(simGames, SelectionPolicy.RANDOM, 23);
+        ForkJoinPool onePool = new ForkJoinPool(1), fourPool = new ForkJoinPool(4);
+        SimulationResult oneThread, fourThreads;
+        try {
+            oneThread = onePool.submit(() -> Simulator.run(simGames, SelectionPolicy.RANDOM, 23)).get();
+            fourThreads = fourPool.submit(() -> Simulator.run(simGames, SelectionPolicy.RANDOM, 23)).get();
+        }
+        catch (InterruptedException | ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+        finally {
+            onePool.shutdown();
+            fourPool.shutdown();
+        }
+
+        // every game played on its own, with the generators split as run() splits them, adds up to the merged result
+        SplittableRandom simRoot = new SplittableRandom(23);
+        SplittableRandom[] taskRngs = new SplittableRandom[(simGames + Simulator.GAMES_PER_TASK - 1) / Simulator.GAMES_PER_TASK];
+        for (int t = 0; t < taskRngs.length; t++)
+            taskRngs[t] = simRoot.split();
+        long simSets = 0, simAdd3s = 0;
+        long[] simPerBoard = new long[common.getSetsPerBoard().length];
+        long[] simPerGame = new long[common.getSetsPerGame().length];
+        long[] simLeftOver = new long[common.getCardsLeftOver().length];
+        for (int i = 0; i < simGames; i++) {
+            SplittableRandom taskRng = taskRngs[i / Simulator.GAMES_PER_TASK];
+            SimulationResult alone = new SimulationResult();
+            Simulator.play(new Game(taskRng.split()), SelectionPolicy.RANDOM, taskRng, alone);
+            simSets += alone.getSetsTaken();
+            simAdd3s += alone.getAdd3Calls();
+            for (int b = 0; b < simPerBoard.length; b++)
+                simPerBoard[b] += alone.getSetsPerBoard()[b];
+            for (int b = 0; b < simPerGame.length; b++)
+                simPerGame[b] += alone.getSetsPerGame()[b];
+            for (int b = 0; b < simLeftOver.length; b++)
+                simLeftOver[b] += alone.getCardsLeftOver()[b];
+        }
+        boolean summed = common.getGames() == simGames && common.getSetsTaken() == simSets
+                && common.getAdd3Calls() == simAdd3s && Arrays.equals(common.getSetsPerBoard(), simPerBoard)
+                && Arrays.equals(common.getSetsPerGame(), simPerGame) && Arrays.equals(common.getCardsLeftOver(), simLeftOver);
+        System.out.println(String.format("same on 1 thread: %b, on 4 threads: %b, totals are the sum of %d games: %b",
+                common.equals(oneThread), common.equals(fourThreads), simGames, summed));
+
+        System.out.println("======== TOURNAMENT CHECKER ========");
+        // a deterministic player against itself plays each deck to the same margin from both seats
+        Tournament.Match mirror = Tournament.play(Player.FIRST_FOUND, Player.FIRST_FOUND, 2000, 0);
+        Tournament.Match match = Tournament.play(Player.MOST_FOLLOW_UP, Player.RANDOM, 2000, 0);
+        Tournament.Match rematch = Tournament.play(Player.MOST_FOLLOW_UP, Player.RANDOM, 2000, 0);
+        System.out.println("mirror:  " + mirror);
+        System.out.println("match:   " + match + ", repeatable: " + match.toString().equals(rematch.toString()));
+        // against a long run's estimate of the true score, about 95% of short tournaments' intervals should hold it
+        double truth = Tournament.play(Player.MOST_FOLLOW_UP, Player.RANDOM, 20_000, 1_000_000).winRate();
+        int covered = 0;
+        for (int t = 0; t < 200; t++) {
+            Tournament.Match shortMatch = Tournament.play(Player.MOST_FOLLOW_UP, Player.RANDOM, 100, 100L * t);
+            if (shortMatch.lowerBound() <= truth && truth <= shortMatch.upperBound())
+                covered++;
+        }
+        System.out.println(String.format("100-deck intervals holding the 20000-deck score (%.1f%%): %d/200",
+                100 * truth, covered));
+
+        System.out.println("======== METRICS CHECKER ========");
+        if (!GameMetrics.ENABLED) {
+            System.out.println("metrics off (run with -Dset.metrics=true to check them)");
+        }
+        else {
+            // read everything back the way a JMX client would
+            GameMetricsMXBean metrics = JMX.newMXBeanProxy(ManagementFactory.getPlatformMBeanServer(),
+                    new ObjectName(GameMetrics.OBJECT_NAME), GameMetricsMXBean.class);
+            metrics.reset();
+            Simulator.run(10_000, SelectionPolicy.FIRST, 3);
+            Game wrong = new Game(3);   // the first row of seed 3 is not a set
+            for (int i = 0; i < 3; i++)
+                wrong.addToSelected(0, i);
+            wrong.testSelected();
+            System.out.println(String.format("calls: %s, valid sets: %d, invalid sets: %d",
+                    metrics.getCalls(), metrics.getValidSets(), metrics.getInvalidSets()));
+            System.out.println(String.format("median ns: %s, p99 ns: %s", metrics.getMedianNanos(), metrics.getP99Nanos()));
+        }
+
+        System.out.println("======== PUZZLE CHECKER ========");
+        int rankMismatches = 0;
+        SplittableRandom dealing = new SplittableRandom(13);
+        for (int i = 0; i < 100_000; i++) {
+            int[] board = dealing.ints(0, 81).distinct().limit(1 + dealing.nextInt(PuzzleBank.MAX_CARDS)).sorted().toArray();
+            int[] back = new int[board.length];
+            PuzzleBank.unrank(PuzzleBank.rank(board), board.length, back);
+            if (!Arrays.equals(board, back))
+                rankMismatches++;
+        }
+        System.out.println("rank/unrank mismatches: " + rankMismatches);
+
+        Path bankFile = Files.createTempFile("set", ".puzzles");
+        long bankStart = System.nanoTime();
+        long drawn;
+        try (PuzzleBank bank = PuzzleBank.create(bankFile, 12, 200_000)) {
+            drawn = new PuzzleGenerator(12, 6).fill(bank, 17);
+        }
+        long bankElapsed = System.nanoTime() - bankStart;
+        int puzzleMismatches = 0;
+        try (PuzzleBank bank = PuzzleBank.open(bankFile)) {
+            // count the sets of a sample of puzzles the slow way
+            int[] board = new int[bank.getCards()];
+            for (long n = 0; n < bank.size(); n += 97) {
+                bank.get(n, board);
+                int found = 0;
+                boolean sorted = true;
+                for (int i = 0; i < board.length; i++) {
+                    sorted &= i == 0 || board[i - 1] < board[i];
+                    for (int j = i + 1; j < board.length; j++)
+                        for (int k = j + 1; k < board.length; k++)
+                            if (Card.isSet(Card.of(board[i]), Card.of(board[j]), Card.of(board[k])))
+                                found++;
+                }
+                if (!sorted || found != 6)
+                    puzzleMismatches++;
+            }
+        }
+        System.out.println(String.format("puzzles: 200000 in %.0f ms (1 in %.1f drawn), %d bytes on disk, mismatches: %d",
+                bankElapsed / 1e6, drawn / 2e5, Files.size(bankFile), puzzleMismatches));
+
+        // a bank whose header does not match its length, or describes no valid board, must not open
+        byte[] bankBytes = Files.readAllBytes(bankFile);
+        ArrayList<byte[]> corruptBanks = new ArrayList<>();
+        corruptBanks.add(Arrays.copyOf(bankBytes, bankBytes.length - 3));          // cut short mid-board
+        corruptBanks.add(Arrays.copyOf(bankBytes, bankBytes.length + 6));          // one board too many
+        corruptBanks.add(Arrays.copyOf(bankBytes, 10));                            // cut short mid-header
+        for (int field : new int[] {5, 6, 15}) {                                   // cards, bytes per board, count
+            byte[] bad = bankBytes.clone();
+            bad[field] = (byte) (field == 15 ? 0x80 : bad[field] + 1);
+            corruptBanks.add(bad);
+        }
+        int rejectedBanks = 0;
+        for (byte[] bad : corruptBanks) {
+            Files.write(bankFile, bad);
+            try (PuzzleBank bank = PuzzleBank.open(bankFile)) {
+                bank.get(bank.size() - 1);
+            }
+            catch (IOException e) {
+                rejectedBanks++;
+            }
+        }
+        Files.delete(bankFile);
+
+        // set-free boards too rare to draw are refused up front
+        int refusedTargets = 0;
+        for (int cards = PuzzleGenerator.MAX_SET_FREE_CARDS + 1; cards <= PuzzleBank.MAX_CARDS; cards++) {
+            try {
+                new PuzzleGenerator(cards, 0);
+            }
+            catch (IllegalArgumentException e) {
+                refusedTargets++;
+            }
+        }
+        System.out.println(String.format("corrupt banks rejected: %d/%d, set-free targets refused: %d/%d",
+                rejectedBanks, corruptBanks.size(), refusedTargets, PuzzleBank.MAX_CARDS - PuzzleGenerator.MAX_SET_FREE_CARDS));
+
+        System.out.println("======== DEAL STATS CHECKER ========");
+        DealStats live = new DealStats();
+        Future<?> producers = ForkJoinPool.commonPool().submit(() -> live.run(50_000, SelectionPolicy.FIRST, 19));
+        DealStats.Snapshot early;
+        while ((early = live.snapshot()).getDeals() == 0)
+            Thread.onSpinWait();
+        try {
+            producers.get();
+        }
+        catch (InterruptedException | ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+        DealStats.Snapshot finished = live.snapshot();
+        DealStats replay = new DealStats();
+        replay.run(50_000, SelectionPolicy.FIRST, 19);
+
+        // the same deals fed one opening Board at a time, merged from two halves
+        DealStats first = new DealStats(), second = new DealStats();
+        for (long seed = 0; seed < 2000; seed++)
+            (seed < 1000 ? first : second).recordOpening(new Board(new Deck(seed)));
+        DealStats whole = new DealStats();
+        for (long seed = 0; seed < 2000; seed++)
+            whole.recordOpening(new Board(new Deck(seed)));
+
+        Path statsFile = Files.createTempFile("set", ".stats");
+        finished.save(statsFile);
+        boolean monotonic = true;   // a snapshot taken mid-run never counts more than the final one
+        for (int i = 0; i < early.getOpeningSets().length; i++)
+            monotonic &= early.getOpeningSets()[i] <= finished.getOpeningSets()[i];
+        long openings = Arrays.stream(finished.getOpeningSets()).sum();
+        long[] byDifferences = finished.getSetsByDifferences();
+        double openingSetTotal = Arrays.stream(byDifferences).sum();
+        System.out.println(String.format("mid-run snapshot: %d deals (within final: %b), deterministic: %b, merge: %b, save/load: %b, totals: %b",
+                early.getDeals(), monotonic, finished.equals(replay.snapshot()),
+                first.snapshot().merge(second.snapshot()).equals(whole.snapshot()),
+                DealStats.Snapshot.load(statsFile).equals(finished),
+                openings == finished.getDeals() && Arrays.stream(finished.getCardsAtDeckOut()).sum() == finished.getDeals()));
+        System.out.println(String.format("sets per opening board: %.3f (expected %.3f), differing in 1..4 attributes: "
+                        + "%.3f %.3f %.3f %.3f (expected 0.1 0.3 0.4 0.2)",
+                openingSetTotal / openings, 220 / 79.0, byDifferences[1] / openingSetTotal,
+                byDifferences[2] / openingSetTotal, byDifferences[3] / openingSetTotal, byDifferences[4] / openingSetTotal));
+        Files.delete(statsFile);
+
         Game g = new Game();
         System.out.println(g);
 
@@ -42,4 +906,66 @@ public class SetDriver {
             System.out.println(bs);
         }
     }
+
+    /**
+     * Plays terminal output onto a screen of characters and colors: text, newlines, cursor moves (ESC[r;cH),
+     * erases (ESC[J, ESC[2J, ESC[K) and colors (ESC[nm). Just enough of a terminal to check TerminalRenderer.
+     * @param output the output
+     * @param screen the characters on the screen, 0 where nothing was written
+     * @param colors the color of each character
+     */
+    private static void replayAnsi(String output, char[][] screen, byte[][] colors) {
+        int row = 0, col = 0, color = 0;
+        for (int i = 0; i < output.length(); i++) {
+            char c = output.charAt(i);
+            if (c == '\n') {
+                row++;
+                col = 0;
+            }
+            else if (c == 27) {
+                int start = i + 2;
+                for (i = start; !Character.isLetter(output.charAt(i)); i++)
+                    ;
+                String[] params = output.substring(start, i).split(";");
+                switch (output.charAt(i)) {
+                    case 'H':
+                        row = params[0].isEmpty() ? 0 : Integer.parseInt(params[0]) - 1;
+                        col = params[0].isEmpty() ? 0 : Integer.parseInt(params[1]) - 1;
+                        break;
+                    case 'J':
+                        for (int r = params[0].equals("2") ? 0 : row; r < screen.length; r++)
+                            Arrays.fill(screen[r], r == row && !params[0].equals("2") ? col : 0, screen[r].length, (char) 0);
+                        break;
+                    case 'K':
+                        Arrays.fill(screen[row], col, screen[row].length, (char) 0);
+                        break;
+                    case 'm':
+                        color = Integer.parseInt(params[0]);
+                        break;
+                }
+            }
+            else {
+                screen[row][col] = c;
+                colors[row][col++] = (byte) color;
+            }
+        }
+    }
+
+    /**
+     * @param matrix the linear part of an affine map, acting on the base-3 digits of a Card index, attribute 0 first
+     * @param shift the translation of the map
+     * @param card a Card index
+     * @return the Card index the map sends the card to
+     */
+    private static int affine(int[][] matrix, int[] shift, int card) {
+        int[] digits = {card / 27, card / 9 % 3, card / 3 % 3, card % 3};
+        int image = 0;
+        for (int a = 0; a < 4; a++) {
+            int v = shift[a];
+            for (int b = 0; b < 4; b++)
+                v += matrix[a][b] * digits[b];
+            image = image * 3 + v % 3;
+        }
+        return image;
+    }
 }
@@ -0,0 +1,371 @@
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Set with any number of attributes: the cards of AG(d,3), for d from 1 to 21.
+ * <p>
+ * A card is a vector of d attributes, each 0, 1 or 2, packed into a long with one bit per attribute value
+ * (3 bits per attribute, exactly one of them set). This is the same encoding Card uses internally, so the
+ * classic game is the d = 4 case: a packed card's ordinal is the Card's index. Every operation works on
+ * all attributes at once with a handful of word-wide bit operations, whatever the dimension.
+ * <p>
+ * Boards are plain arrays of packed cards. Counting or finding sets on a board with at least
+ * {@link #PARALLEL_THRESHOLD} cards is split across every core with fork-join.
+ */
+public class SetEngine {
+    public static final int MAX_DIMENSION = 21;
+    public static final int PARALLEL_THRESHOLD = 256;
+    private static final int ROWS_PER_TASK = 8;
+
+    /**
+     * The engine for the classic 4-attribute game.
+     */
+    public static final SetEngine CLASSIC = new SetEngine(4);
+
+    private final int dimension;
+    private final long deckSize;
+    private final long low;     // the lowest bit of every attribute
+    private final long all;     // every bit of every attribute
+
+    /**
+     * Constructor.
+     * @param dimension the number of attributes of every card, from 1 to 21
+     */
+    public SetEngine(int dimension) {
+        if (dimension < 1 || dimension > MAX_DIMENSION)
+            throw new IllegalArgumentException(String.format("dimension must be 1..%d: %d", MAX_DIMENSION, dimension));
+
+        this.dimension = dimension;
+        long size = 1;
+        long lowBits = 0;
+        for (int a = 0; a < dimension; a++) {
+            size *= 3;
+            lowBits |= 1L << (3 * a);
+        }
+        this.deckSize = size;
+        this.low = lowBits;
+        this.all = lowBits * 7;
+    }
+
+    // region getters
+
+    /**
+     * @return the number of attributes of every card
+     */
+    public int getDimension() {
+        return dimension;
+    }
+
+    /**
+     * @return the number of distinct cards, 3 to the power of the dimension
+     */
+    public long getDeckSize() {
+        return deckSize;
+    }
+
+    // endregion getters
+
+    // region cards
+
+    /**
+     * Packs a card given by its ordinal, a base-3 number whose most significant digit is attribute 0.
+     * @param ordinal the ordinal of the card, from 0 to getDeckSize() - 1
+     * @return the packed card
+     */
+    public long pack(long ordinal) {
+        long card = 0;
+        for (int a = dimension - 1; a >= 0; a--) {
+            card |= 1L << (3 * a + (int) (ordinal % 3));
+            ordinal /= 3;
+        }
+        return card;
+    }
+
+    /**
+     * @param card a packed card
+     * @return the ordinal of the card, a base-3 number whose most significant digit is attribute 0
+     */
+    public long ordinal(long card) {
+        long ordinal = 0;
+        for (int a = 0; a < dimension; a++)
+            ordinal = ordinal * 3 + attribute(card, a);
+        return ordinal;
+    }
+
+    /**
+     * @param card a packed card
+     * @param a the number of the attribute, from 0 to getDimension() - 1
+     * @return the value of the attribute: 0, 1 or 2
+     */
+    public static int attribute(long card, int a) {
+        return Long.numberOfTrailingZeros(card >>> (3 * a) & 7);
+    }
+
+    /**
+     * @param card a classic Card
+     * @return the Card packed as a 4-attribute card
+     */
+    public static long pack(Card card) {
+        return CLASSIC.pack(card.getIndex());
+    }
+
+    /**
+     * Branch-free set test on packed cards of any dimension: an attribute is "all same" or "all different"
+     * exactly when OR-ing the three cards sets the same bits as XOR-ing them.
+     * @param c1 a packed card
+     * @param c2 a packed card
+     * @param c3 a packed card
+     * @return True if the three cards form a set, False otherwise.
+     */
+    public static boolean isSet(long c1, long c2, long c3) {
+        return (c1 | c2 | c3) == (c1 ^ c2 ^ c3);
+    }
+
+    /**
+     * Completes a pair of cards to a set, on every attribute at once: where the two cards agree the third card
+     * agrees too, where they differ it takes the one value neither of them has.
+     * @param c1 a packed card
+     * @param c2 a packed card
+     * @return the only card that forms a set with the two given cards.
+     */
+    public long third(long c1, long c2) {
+        long diff = c1 ^ c2;
+        long differing = ((diff | diff >>> 1 | diff >>> 2) & low) * 7;   // all 3 bits of every differing attribute
+        return (c1 & c2 & ~differing) | (~(c1 | c2) & differing & all);
+    }
+
+    // endregion cards
+
+    // region deals
+
+    /**
+     * Deals distinct cards at random. Small decks are shuffled; large ones are sampled, so a board of a few
+     * hundred cards can be dealt even when the deck has billions.
+     * @param count the number of cards to deal
+     * @param random the random number generator to deal from
+     * @return the packed cards
+     * @throws IllegalArgumentException if the deal needs the whole deck shuffled but the deck, at 3^d cards, has
+     *         more than Integer.MAX_VALUE of them (d of 20 or more)
+     */
+    public long[] deal(int count, SplittableRandom random) {
+        if (count < 0 || count > deckSize)
+            throw new IllegalArgumentException(String.format("cannot deal %d cards from %d", count, deckSize));
+
+        if (deckSize <= 4L * count && deckSize > Integer.MAX_VALUE)
+            throw new IllegalArgumentException(String.format(
+                    "cannot shuffle the %d cards of dimension %d; deal at most %d of them", deckSize, dimension, deckSize / 4));
+
+        long[] cards = new long[count];
+        if (deckSize <= 4L * count) {
+            // partial Fisher-Yates over the whole deck
+            long[] deck = new long[(int) deckSize];
+            for (int i = 0; i < deck.length; i++)
+                deck[i] = pack(i);
+            for (int i = 0; i < count; i++) {
+                int j = i + random.nextInt(deck.length - i);
+                cards[i] = deck[j];
+                deck[j] = deck[i];
+            }
+        }
+        else {
+            // rejection sampling, rarely rejects since the deck is much larger than the deal
+            CardIndex dealt = new CardIndex(count);
+            for (int i = 0; i < count; ) {
+                long card = pack(random.nextLong(deckSize));
+                if (dealt.indexOf(card) < 0) {
+                    dealt.put(card, i);
+                    cards[i++] = card;
+                }
+            }
+        }
+        return cards;
+    }
+
+    // endregion deals
+
+    // region searches
+
+    /**
+     * Counts the sets on a board, on every core when the board is large.
+     * @param board distinct packed cards
+     * @return the number of sets among the cards
+     */
+    public long countSets(long[] board) {
+        CardIndex index = CardIndex.of(board);
+        if (board.length < PARALLEL_THRESHOLD)
+            return countRows(board, index, 0, board.length);
+        return ForkJoinPool.commonPool().invoke(new CountTask(board, index, 0, board.length));
+    }
+
+    /**
+     * Finds one set on a board, on every core when the board is large.
+     * @param board distinct packed cards
+     * @return the positions on the board of three cards that form a set, or an empty Array if there are none
+     */
+    public int[] findSet(long[] board) {
+        CardIndex index = CardIndex.of(board);
+        int[] set = board.length < PARALLEL_THRESHOLD
+                ? findInRows(board, index, 0, board.length)
+                : ForkJoinPool.commonPool().invoke(new FindTask(board, index, 0, board.length));
+        return set == null ? new int[] {} : set;
+    }
+
+    /**
+     * Lists every set on a board.
+     * @param board distinct packed cards
+     * @return the positions on the board of the three cards of every set
+     */
+    public ArrayList<int[]> findAllSets(long[] board) {
+        CardIndex index = CardIndex.of(board);
+        ArrayList<int[]> sets = new ArrayList<>();
+        for (int i = 0; i < board.length; i++) {
+            for (int j = i + 1; j < board.length; j++) {
+                int k = index.indexOf(third(board[i], board[j]));
+                if (k > j)
+                    sets.add(new int[] {i, j, k});
+            }
+        }
+        return sets;
+    }
+
+    /**
+     * Counts the sets whose first card is in the given rows, each set being counted from its lowest position.
+     */
+    private long countRows(long[] board, CardIndex index, int from, int to) {
+        long count = 0;
+        for (int i = from; i < to; i++)
+            for (int j = i + 1; j < board.length; j++)
+                if (index.indexOf(third(board[i], board[j])) > j)
+                    count++;
+        return count;
+    }
+
+    /**
+     * Finds a set whose first card is in the given rows.
+     * @return the positions of the set, or null if there is none
+     */
+    private int[] findInRows(long[] board, CardIndex index, int from, int to) {
+        for (int i = from; i < to; i++) {
+            for (int j = i + 1; j < board.length; j++) {
+                int k = index.indexOf(third(board[i], board[j]));
+                if (k > j)
+                    return new int[] {i, j, k};
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Counts sets over a range of rows, splitting the range until it is small enough to count directly.
+     */
+    @SuppressWarnings("serial")     // fork-join tasks are never serialized
+    private class CountTask extends RecursiveTask<Long> {
+        private final long[] board;
+        private final CardIndex index;
+        private final int from;
+        private final int to;
+
+        CountTask(long[] board, CardIndex index, int from, int to) {
+            this.board = board;
+            this.index = index;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Long compute() {
+            if (to - from <= ROWS_PER_TASK)
+                return countRows(board, index, from, to);
+
+            int mid = (from + to) >>> 1;
+            CountTask left = new CountTask(board, index, from, mid);
+            left.fork();
+            long right = new CountTask(board, index, mid, to).compute();
+            return right + left.join();
+        }
+    }
+
+    /**
+     * Finds a set over a range of rows, splitting the range until it is small enough to search directly.
+     */
+    @SuppressWarnings("serial")     // fork-join tasks are never serialized
+    private class FindTask extends RecursiveTask<int[]> {
+        private final long[] board;
+        private final CardIndex index;
+        private final int from;
+        private final int to;
+
+        FindTask(long[] board, CardIndex index, int from, int to) {
+            this.board = board;
+            this.index = index;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected int[] compute() {
+            if (to - from <= ROWS_PER_TASK)
+                return findInRows(board, index, from, to);
+
+            int mid = (from + to) >>> 1;
+            FindTask right = new FindTask(board, index, mid, to);
+            right.fork();
+            int[] set = new FindTask(board, index, from, mid).compute();
+            if (set != null) {
+                right.cancel(false);
+                return set;
+            }
+            return right.join();
+        }
+    }
+
+    // endregion searches
+
+    /**
+     * Open-addressing hash table from packed card to its position on a board.
+     */
+    private static class CardIndex {
+        private final long[] keys;
+        private final int[] positions;
+        private final int mask;
+
+        CardIndex(int capacity) {
+            int size = Integer.highestOneBit(Math.max(4, capacity) * 2) * 2;
+            keys = new long[size];
+            positions = new int[size];
+            mask = size - 1;
+        }
+
+        static CardIndex of(long[] board) {
+            CardIndex index = new CardIndex(board.length);
+            for (int i = 0; i < board.length; i++)
+                index.put(board[i], i);
+            return index;
+        }
+
+        void put(long card, int position) {
+            int slot = slot(card);
+            while (keys[slot] != 0 && keys[slot] != card)
+                slot = (slot + 1) & mask;
+            keys[slot] = card;
+            positions[slot] = position;
+        }
+
+        /**
+         * @return the position of the card, or -1 if it is not on the board
+         */
+        int indexOf(long card) {
+            // packed cards are never 0, so 0 marks an empty slot
+            for (int slot = slot(card); keys[slot] != 0; slot = (slot + 1) & mask)
+                if (keys[slot] == card)
+                    return positions[slot];
+            return -1;
+        }
+
+        private int slot(long card) {
+            return (int) ((card * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+        }
+    }
+}
@@ -0,0 +1,385 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hosts many tables of Set in one JVM, over a line-based protocol on a local socket.
+ * <p>
+ * Every connection is served by its own virtual thread (JDK 21+), so thousands of idle players only cost a
+ * parked thread and two small byte buffers each, about 5 KB of heap in all: the protocol is ASCII, so lines are
+ * read and written as bytes, without the 8 KB decoder and encoder buffers of a Reader and a Writer.
+ * Players at the same table share one Game. A player's selection is kept on the connection, as Cards rather than
+ * positions, and only applied to the Game, atomically, once the third card is picked.
+ * <p>
+ * The commands follow GameText, one per line, each answered by exactly one line:
+ * <pre>
+ *   j name     join (or create) a table                  -&gt; ok name
+ *   s r c      select the card at row r, column c        -&gt; ok | set score | noset | stale | err ...
+ *   d r c      deselect the card at row r, column c      -&gt; ok | err ...
+ *   a          add 3 cards                               -&gt; ok | err ...
+ *   l          list selected cards                       -&gt; selected r c r c ...
+ *   b          show the board                            -&gt; board remaining sets cols i i i ... (row by row)
+ *   n          deal a new game, once this one is over    -&gt; ok | err game not over
+ *   e          end the session                           -&gt; bye
+ * </pre>
+ * A game is over, as in GameText, once the deck is empty and no set is left on the board ("board 0 0 ...");
+ * any player at the table may then deal the next one, which drops every player's selection. A line longer than
+ * MAX_LINE characters is answered with "err line too long" and the connection is closed.
+ * Every connection starts at the table called "default". A table lives as long as it has players: when the last
+ * one leaves, by joining another table or by disconnecting, the table and its Game are dropped. A join that would
+ * open a table beyond the server's limit is refused with "err too many tables", and the player stays where they are;
+ * a connection refused the default table is closed.
+ */
+public class SetServer implements Closeable {
+    private static final int BUFFER_SIZE = 256;
+    private static final int MAX_LINE = 128;
+    private static final int MAX_TABLES = 10_000;
+    private static final String DEFAULT_TABLE = "default";
+    private static final long MIN_BACKOFF_MS = 10;
+    private static final long MAX_BACKOFF_MS = 1_000;
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService connections = Executors.newVirtualThreadPerTaskExecutor();
+    private final ConcurrentHashMap<String, Table> tables = new ConcurrentHashMap<>();
+    private final AtomicInteger tableCount = new AtomicInteger();
+    private final int maxTables;
+
+    /**
+     * One Game shared by every player at a table.
+     * A ReentrantLock rather than synchronized, so that a virtual thread waiting for the table does not pin its carrier.
+     */
+    private static class Table {
+        private final String name;
+        private Game game = new Game();     // only read or replaced while holding lock
+        private final ReentrantLock lock = new ReentrantLock();
+        private int players;    // only changed inside tables.compute(), which holds the table's map entry
+
+        private Table(String name) {
+            this.name = name;
+        }
+    }
+
+    /**
+     * Constructor. Binds to the loopback interface only.
+     * @param port the port to listen on, or 0 for any free port
+     * @throws IOException if the port cannot be bound
+     */
+    public SetServer(int port) throws IOException {
+        this(port, MAX_TABLES);
+    }
+
+    /**
+     * Constructor. Binds to the loopback interface only.
+     * @param port the port to listen on, or 0 for any free port
+     * @param maxTables the most tables open at once
+     * @throws IOException if the port cannot be bound
+     */
+    public SetServer(int port, int maxTables) throws IOException {
+        if (maxTables < 1)
+            throw new IllegalArgumentException("a server needs room for at least one table: " + maxTables);
+        this.maxTables = maxTables;
+        serverSocket = new ServerSocket(port, 1024, InetAddress.getLoopbackAddress());
+    }
+
+    /**
+     * @return the port this server is listening on
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * @return the number of tables open, i.e. with at least one player
+     */
+    public int getTableCount() {
+        return tableCount.get();
+    }
+
+    /**
+     * Starts accepting connections in the background.
+     */
+    public void start() {
+        connections.submit(() -> {
+            long backoff = 0;
+            while (!serverSocket.isClosed()) {
+                try {
+                    Socket socket = serverSocket.accept();
+                    connections.submit(() -> serve(socket));
+                    backoff = 0;
+                }
+                catch (IOException e) {
+                    if (serverSocket.isClosed())
+                        return;
+                    // e.g. out of file descriptors: wait for some connections to close rather than spin
+                    backoff = Math.min(Math.max(2 * backoff, MIN_BACKOFF_MS), MAX_BACKOFF_MS);
+                    System.err.println(String.format("accept failed, retrying in %d ms: %s", backoff, e));
+                    try {
+                        Thread.sleep(backoff);
+                    }
+                    catch (InterruptedException ie) {
+                        return;
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Stops accepting connections and closes every open one.
+     * @throws IOException if the server socket cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        connections.shutdownNow();
+    }
+
+    /**
+     * Serves one player until they end the session or disconnect.
+     * @param socket the player's connection
+     */
+    private void serve(Socket socket) {
+        Table table = null;
+        try (Socket s = socket) {
+            s.setTcpNoDelay(true);
+            InputStream in = new BufferedInputStream(s.getInputStream(), BUFFER_SIZE);
+            OutputStream out = new BufferedOutputStream(s.getOutputStream(), BUFFER_SIZE);
+
+            table = join(DEFAULT_TABLE);
+            if (table == null) {
+                send(out, "err too many tables");
+                return;
+            }
+            ArrayList<Card> selected = new ArrayList<>(3);
+            Game selectedIn = null;     // the Game the selection was made in
+            int score = 0;
+
+            StringBuilder line = new StringBuilder();
+            while (readLine(in, line)) {
+                if (line.length() > MAX_LINE) {
+                    send(out, "err line too long");
+                    break;
+                }
+                String[] args = line.toString().trim().split("\\s+");
+                String reply;
+
+                if (args[0].equalsIgnoreCase("e")) {
+                    send(out, "bye");
+                    break;
+                }
+                else if (args[0].equalsIgnoreCase("j") && args.length == 2) {
+                    // join the new table before leaving the old one, so that rejoining a table keeps it open
+                    Table joined = join(args[1]);
+                    if (joined == null) {
+                        reply = "err too many tables";
+                    }
+                    else {
+                        leave(table);
+                        table = joined;
+                        selected.clear();
+                        reply = "ok " + args[1];
+                    }
+                }
+                else {
+                    table.lock.lock();
+                    try {
+                        if (selectedIn != table.game) {
+                            selected.clear();
+                            selectedIn = table.game;
+                        }
+
+                        if (args[0].equalsIgnoreCase("n")) {
+                            if (!table.game.outOfCards() || table.game.hasSet()) {
+                                reply = "err game not over";
+                            }
+                            else {
+                                table.game = new Game();
+                                reply = "ok";
+                            }
+                        }
+                        else {
+                            reply = execute(table.game, args, selected);
+                            if (reply.equals("set"))
+                                reply = "set " + ++score;
+                        }
+                    }
+                    finally {
+                        table.lock.unlock();
+                    }
+                }
+
+                send(out, reply);
+            }
+        }
+        catch (IOException e) {
+            // the player disconnected
+        }
+        finally {
+            if (table != null)
+                leave(table);
+        }
+    }
+
+    /**
+     * Reads one line from a player, without its line terminator. Stops reading at MAX_LINE + 1 characters, so that
+     * a player cannot grow the line without bound.
+     * @param in the player's input
+     * @param line filled with the line, or its first MAX_LINE + 1 characters
+     * @return false if the player disconnected before sending anything more
+     * @throws IOException if the connection fails
+     */
+    private static boolean readLine(InputStream in, StringBuilder line) throws IOException {
+        line.setLength(0);
+        int c;
+        while ((c = in.read()) != '\n') {
+            if (c < 0)
+                return line.length() > 0;
+            line.append((char) c);
+            if (line.length() > MAX_LINE)
+                break;
+        }
+        return true;
+    }
+
+    /**
+     * Sends one line to a player.
+     * @param out the player's output
+     * @param reply the line, without its line terminator
+     * @throws IOException if the connection fails
+     */
+    private static void send(OutputStream out, String reply) throws IOException {
+        out.write(reply.getBytes(StandardCharsets.US_ASCII));
+        out.write('\n');
+        out.flush();
+    }
+
+    /**
+     * Seats a player at a table, opening it if nobody is there yet.
+     * @param name the table's name
+     * @return the Table, or null if opening it would exceed the limit on tables
+     */
+    private Table join(String name) {
+        return tables.compute(name, (key, table) -> {
+            if (table == null) {
+                if (tableCount.incrementAndGet() > maxTables) {
+                    tableCount.decrementAndGet();
+                    return null;
+                }
+                table = new Table(key);
+            }
+            table.players++;
+            return table;
+        });
+    }
+
+    /**
+     * Takes a player away from a table, dropping the table if they were its last player.
+     * @param table a Table the player joined
+     */
+    private void leave(Table table) {
+        tables.computeIfPresent(table.name, (key, t) -> {
+            if (--t.players > 0)
+                return t;
+            tableCount.decrementAndGet();
+            return null;
+        });
+    }
+
+    /**
+     * Executes one command against a table's Game. Must be called while holding the table's lock.
+     * @param game the table's Game
+     * @param args the command and its arguments
+     * @param selected the Cards this player has selected so far
+     * @return the reply to send to the player
+     */
+    private static String execute(Game game, String[] args, ArrayList<Card> selected) {
+        Board board = game.getBoard();
+
+        switch (args[0].toLowerCase()) {
+            case "s":
+            case "d": {
+                BoardSquare bs;
+                try {
+                    bs = board.getBoardSquare(Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+                }
+                catch (RuntimeException e) {
+                    return "err expected: " + args[0] + " row col";
+                }
+
+                if (args[0].equalsIgnoreCase("d"))
+                    return selected.remove(bs.getCard()) ? "ok" : "err not selected";
+                if (selected.contains(bs.getCard()))
+                    return "err already selected";
+
+                selected.add(bs.getCard());
+                if (selected.size() < 3)
+                    return "ok";
+
+                // another player may have taken some of these cards in the meantime
+                for (Card card : selected) {
+                    if (board.getBoardSquare(card) == null) {
+                        selected.clear();
+                        return "stale";
+                    }
+                }
+
+                for (Card card : selected) {
+                    BoardSquare other = board.getBoardSquare(card);
+                    game.addToSelected(other.getRowPos(), other.getColPos());
+                }
+                selected.clear();
+                return game.testSelected() ? "set" : "noset";
+            }
+            case "a":
+                if (game.cardsRemaining() < 3 || game.numCardsOnBoard() + 3 > Board.CAPACITY)
+                    return "err can't add 3 more cards";
+                game.add3();
+                return "ok";
+            case "l": {
+                StringBuilder sb = new StringBuilder("selected");
+                for (Card card : selected) {
+                    BoardSquare bs = board.getBoardSquare(card);
+                    if (bs != null)
+                        sb.append(' ').append(bs.getRowPos()).append(' ').append(bs.getColPos());
+                }
+                return sb.toString();
+            }
+            case "b": {
+                StringBuilder sb = new StringBuilder("board ");
+                sb.append(game.cardsRemaining()).append(' ').append(game.countSets()).append(' ').append(board.numCols());
+                for (int row = 0; row < board.numRows(); row++)
+                    for (int col = 0; col < board.numCols(); col++)
+                        sb.append(' ').append(board.getBoardSquare(row, col).getCard().getIndex());
+                return sb.toString();
+            }
+            default:
+                return "err unknown command";
+        }
+    }
+
+    /**
+     * Runs a server until the process is killed.
+     * @param args [port]
+     * @throws IOException if the port cannot be bound
+     * @throws InterruptedException if the main thread is interrupted
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        SetServer server = new SetServer(args.length > 0 ? Integer.parseInt(args[0]) : 5110);
+        server.start();
+        System.out.println(String.format("serving Set on localhost:%d", server.getPort()));
+        Thread.currentThread().join();
+    }
+}
@@ -0,0 +1,172 @@
+import java.util.Arrays;
+
+/**
+ * Aggregated statistics of a batch of simulated games.
+ * <p>
+ * Each worker fills its own instance, and the instances are merged once the workers are done,
+ * so no locking is needed while games are being played.
+ */
+public class SimulationResult {
+    private long games;
+    private long setsTaken;
+    private long add3Calls;
+    private long elapsedNanos;
+
+    private long[] setsPerBoard     = new long[71];    // how many sets each board position had
+    private long[] setsPerGame      = new long[28];    // how many sets were taken over a whole game
+    private long[] cardsLeftOver    = new long[22];    // how many cards were still on the board at the end
+
+    /**
+     * Records one board position that a player had to choose from.
+     * @param sets the number of sets on the board.
+     */
+    void recordBoard(int sets) {
+        setsPerBoard[Math.min(sets, setsPerBoard.length - 1)]++;
+    }
+
+    /**
+     * Records one completed game.
+     * @param sets the number of sets taken during the game.
+     * @param add3s the number of times three cards were added to the board.
+     * @param cardsLeft the number of cards left on the board when the game ended.
+     */
+    void recordGame(int sets, int add3s, int cardsLeft) {
+        games++;
+        setsTaken += sets;
+        add3Calls += add3s;
+        setsPerGame[Math.min(sets, setsPerGame.length - 1)]++;
+        cardsLeftOver[Math.min(cardsLeft, cardsLeftOver.length - 1)]++;
+    }
+
+    /**
+     * @param elapsedNanos the wall-clock time it took to play every game, in nanoseconds.
+     */
+    void setElapsedNanos(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Adds the statistics of another result to this one.
+     * @param other the result to add.
+     * @return this SimulationResult.
+     */
+    SimulationResult merge(SimulationResult other) {
+        games     += other.games;
+        setsTaken += other.setsTaken;
+        add3Calls += other.add3Calls;
+        for (int i = 0; i < setsPerBoard.length; i++)
+            setsPerBoard[i] += other.setsPerBoard[i];
+        for (int i = 0; i < setsPerGame.length; i++)
+            setsPerGame[i] += other.setsPerGame[i];
+        for (int i = 0; i < cardsLeftOver.length; i++)
+            cardsLeftOver[i] += other.cardsLeftOver[i];
+        return this;
+    }
+
+    // region getters
+
+    /**
+     * @return the number of games played.
+     */
+    public long getGames() {
+        return games;
+    }
+
+    /**
+     * @return the total number of sets taken over every game.
+     */
+    public long getSetsTaken() {
+        return setsTaken;
+    }
+
+    /**
+     * @return the total number of times three cards were added to the board.
+     */
+    public long getAdd3Calls() {
+        return add3Calls;
+    }
+
+    /**
+     * @return a histogram of the number of sets on each board position, indexed by number of sets.
+     */
+    public long[] getSetsPerBoard() {
+        return setsPerBoard.clone();
+    }
+
+    /**
+     * @return a histogram of the number of sets taken per game, indexed by number of sets.
+     */
+    public long[] getSetsPerGame() {
+        return setsPerGame.clone();
+    }
+
+    /**
+     * @return a histogram of the number of cards left on the board at the end of each game.
+     */
+    public long[] getCardsLeftOver() {
+        return cardsLeftOver.clone();
+    }
+
+    /**
+     * @return the number of games played per second of wall-clock time.
+     */
+    public double getGamesPerSecond() {
+        return elapsedNanos == 0 ? 0 : games * 1e9 / elapsedNanos;
+    }
+
+    // endregion getters
+
+    /**
+     * @return a String representation of this SimulationResult
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+
+        sb.append(String.format("games:             %d%n", games));
+        sb.append(String.format("throughput:        %.0f games/s%n", getGamesPerSecond()));
+        sb.append(String.format("sets per game:     %.3f%n", (double) setsTaken / games));
+        sb.append(String.format("add3 per game:     %.3f%n", (double) add3Calls / games));
+
+        sb.append("sets per board:   ");
+        appendHistogram(sb, setsPerBoard);
+        sb.append("cards left over:  ");
+        appendHistogram(sb, cardsLeftOver);
+
+        return sb.toString();
+    }
+
+    /**
+     * Two results are equal if they count the same games alike, however long those games took to play.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof SimulationResult))
+            return false;
+        SimulationResult other = (SimulationResult) o;
+        return games == other.games && setsTaken == other.setsTaken && add3Calls == other.add3Calls
+                && Arrays.equals(setsPerBoard, other.setsPerBoard) && Arrays.equals(setsPerGame, other.setsPerGame)
+                && Arrays.equals(cardsLeftOver, other.cardsLeftOver);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(games) * 31 + Arrays.hashCode(setsPerBoard);
+    }
+
+    /**
+     * Appends the non-empty buckets of a histogram as "bucket:fraction" pairs.
+     * @param sb the StringBuilder to append to.
+     * @param histogram the histogram to append.
+     */
+    private static void appendHistogram(StringBuilder sb, long[] histogram) {
+        long total = 0;
+        for (long count : histogram)
+            total += count;
+
+        for (int i = 0; i < histogram.length; i++)
+            if (histogram[i] > 0)
+                sb.append(String.format(" %d:%.4f", i, (double) histogram[i] / total));
+        sb.append(String.format("%n"));
+    }
+}
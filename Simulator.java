@@ -0,0 +1,143 @@
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Headless self-play: plays complete games of Set without any view attached, spread across every core.
+ */
+public class Simulator {
+    static final int GAMES_PER_TASK = 1024;
+
+    /**
+     * Watches the games being played, e.g. to gather statistics that SimulationResult does not keep.
+     * Called from every thread playing games at once, so implementations must be thread-safe.
+     */
+    public interface Observer {
+        Observer NONE = new Observer() {};
+
+        /**
+         * Called once per game, on its opening board, before any set is taken.
+         * @param board the Board of the game.
+         */
+        default void opening(Board board) {}
+
+        /**
+         * Called once per game, on its board right after the deck runs out, before the sets left on it are taken.
+         * @param board the Board of the game.
+         */
+        default void deckOut(Board board) {}
+    }
+
+    /**
+     * Plays a batch of games in parallel on the common fork-join pool.
+     * @param games the number of games to play.
+     * @param policy the policy deciding which set is taken on every turn.
+     * @param seed the seed from which every task's random number generator is split; the same seed plays the same games.
+     * @return the aggregated statistics of every game.
+     */
+    public static SimulationResult run(long games, SelectionPolicy policy, long seed) {
+        return run(games, policy, seed, Observer.NONE);
+    }
+
+    /**
+     * Plays a batch of games in parallel on the common fork-join pool, showing every one to an Observer.
+     * @param games the number of games to play.
+     * @param policy the policy deciding which set is taken on every turn.
+     * @param seed the seed from which every task's random number generator is split; the same seed plays the same games.
+     * @param observer the Observer of every game.
+     * @return the aggregated statistics of every game.
+     */
+    public static SimulationResult run(long games, SelectionPolicy policy, long seed, Observer observer) {
+        int tasks = (int) ((games + GAMES_PER_TASK - 1) / GAMES_PER_TASK);
+
+        // split the generators up front, SplittableRandom itself is not thread-safe
+        SplittableRandom root = new SplittableRandom(seed);
+        SplittableRandom[] rngs = new SplittableRandom[tasks];
+        for (int t = 0; t < tasks; t++)
+            rngs[t] = root.split();
+
+        long start = System.nanoTime();
+        SimulationResult result = IntStream.range(0, tasks)
+                .parallel()
+                .mapToObj(t -> {
+                    SimulationResult partial = new SimulationResult();
+                    long count = Math.min(GAMES_PER_TASK, games - (long) t * GAMES_PER_TASK);
+                    for (long g = 0; g < count; g++)
+                        play(new Game(rngs[t].split()), policy, rngs[t], partial, observer);
+                    return partial;
+                })
+                .reduce(SimulationResult::merge)
+                .orElseGet(SimulationResult::new);
+        result.setElapsedNanos(System.nanoTime() - start);
+
+        return result;
+    }
+
+    /**
+     * Plays one game to completion: sets are taken while there are any, three cards are added
+     * when there are none, and the game ends once the deck is empty and no set is left.
+     * @param game the Game to play.
+     * @param policy the policy deciding which set is taken on every turn.
+     * @param rng the random number generator of the current thread.
+     * @param result the statistics to record the game into.
+     */
+    public static void play(Game game, SelectionPolicy policy, SplittableRandom rng, SimulationResult result) {
+        play(game, policy, rng, result, Observer.NONE);
+    }
+
+    /**
+     * Plays one game to completion, as above, showing it to an Observer.
+     * @param game the Game to play.
+     * @param policy the policy deciding which set is taken on every turn.
+     * @param rng the random number generator of the current thread.
+     * @param result the statistics to record the game into.
+     * @param observer the Observer of the game.
+     */
+    public static void play(Game game, SelectionPolicy policy, SplittableRandom rng, SimulationResult result,
+                            Observer observer) {
+        int sets = 0;
+        int add3s = 0;
+        boolean deckOut = false;
+
+        observer.opening(game.getBoard());
+        while (true) {
+            if (!deckOut && game.outOfCards()) {
+                observer.deckOut(game.getBoard());
+                deckOut = true;
+            }
+            result.recordBoard(game.countSets());
+
+            BoardSquare[] set = game.hasSet() ? policy.choose(game, rng) : new BoardSquare[] {};
+            if (set.length == 3) {
+                for (BoardSquare bs : set)
+                    game.addToSelected(bs.getRowPos(), bs.getColPos());
+                if (game.testSelected())
+                    sets++;
+            }
+            else if (!game.outOfCards()) {
+                game.add3();
+                add3s++;
+            }
+            else {
+                break;
+            }
+        }
+
+        result.recordGame(sets, add3s, game.numCardsOnBoard());
+    }
+
+    /**
+     * Runs a simulation from the command line.
+     * @param args [number of games] [first|random] [seed]
+     */
+    public static void main(String[] args) {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        SelectionPolicy policy = args.length > 1 && args[1].equalsIgnoreCase("random")
+                ? SelectionPolicy.RANDOM
+                : SelectionPolicy.FIRST;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : System.nanoTime();
+
+        System.out.println(String.format("simulating %d games on %d cores...",
+                games, Runtime.getRuntime().availableProcessors()));
+        System.out.print(run(games, policy, seed));
+    }
+}
@@ -0,0 +1,109 @@
+/**
+ * Student's t distribution, for confidence intervals on the mean of a handful of samples with unknown variance:
+ * the mean of n samples is within quantile(1 - alpha / 2, n - 1) standard errors of the true mean with
+ * probability 1 - alpha.
+ */
+public final class StudentT {
+    private static final double EPSILON = 1e-15;
+    private static final double[] LANCZOS = {
+            676.5203681218851, -1259.1392167224028, 771.32342877765313, -176.61502916214059,
+            12.507343278686905, -0.13857109526572012, 9.9843695780195716e-6, 1.5056327351493116e-7};
+
+    private StudentT() {
+    }
+
+    /**
+     * @param p a probability, strictly between 0 and 1
+     * @param df the degrees of freedom, at least 1
+     * @return the value t such that a t-distributed variable is at most t with probability p
+     */
+    public static double quantile(double p, long df) {
+        if (!(p > 0 && p < 1) || df < 1)
+            throw new IllegalArgumentException(String.format("no t quantile for p = %s, df = %d", p, df));
+        if (p < 0.5)
+            return -quantile(1 - p, df);
+
+        double lo = 0, hi = 1;
+        while (cdf(hi, df) < p)
+            hi *= 2;
+        for (int i = 0; i < 200 && hi - lo > EPSILON * hi; i++) {
+            double mid = (lo + hi) / 2;
+            if (cdf(mid, df) < p)
+                lo = mid;
+            else
+                hi = mid;
+        }
+        return (lo + hi) / 2;
+    }
+
+    /**
+     * @param t a value
+     * @param df the degrees of freedom, at least 1
+     * @return the probability that a t-distributed variable is at most t
+     */
+    public static double cdf(double t, long df) {
+        double tail = 0.5 * regularizedBeta(df / (df + t * t), df / 2.0, 0.5);
+        return t >= 0 ? 1 - tail : tail;
+    }
+
+    /**
+     * @return the regularized incomplete beta function I_x(a, b)
+     */
+    private static double regularizedBeta(double x, double a, double b) {
+        if (x <= 0)
+            return 0;
+        if (x >= 1)
+            return 1;
+        double front = Math.exp(logGamma(a + b) - logGamma(a) - logGamma(b) + a * Math.log(x) + b * Math.log(1 - x));
+        // the continued fraction converges quickly only below the mean, so use the symmetry I_x(a, b) = 1 - I_1-x(b, a)
+        if (x < (a + 1) / (a + b + 2))
+            return front * betaFraction(x, a, b) / a;
+        return 1 - front * betaFraction(1 - x, b, a) / b;
+    }
+
+    /**
+     * Evaluates the continued fraction of the incomplete beta function with the modified Lentz method.
+     */
+    private static double betaFraction(double x, double a, double b) {
+        double tiny = 1e-300;
+        double c = 1;
+        double d = 1 - (a + b) * x / (a + 1);
+        d = 1 / (Math.abs(d) < tiny ? tiny : d);
+        double f = d;
+        for (int m = 1; m <= 10_000; m++) {
+            // even step
+            double numerator = m * (b - m) * x / ((a + 2 * m - 1) * (a + 2 * m));
+            d = 1 + numerator * d;
+            c = 1 + numerator / c;
+            d = 1 / (Math.abs(d) < tiny ? tiny : d);
+            c = Math.abs(c) < tiny ? tiny : c;
+            f *= d * c;
+
+            // odd step
+            numerator = -(a + m) * (a + b + m) * x / ((a + 2 * m) * (a + 2 * m + 1));
+            d = 1 + numerator * d;
+            c = 1 + numerator / c;
+            d = 1 / (Math.abs(d) < tiny ? tiny : d);
+            c = Math.abs(c) < tiny ? tiny : c;
+            double delta = d * c;
+            f *= delta;
+            if (Math.abs(delta - 1) < EPSILON)
+                break;
+        }
+        return f;
+    }
+
+    /**
+     * @return the natural logarithm of the gamma function, by the Lanczos approximation (g = 7)
+     */
+    private static double logGamma(double x) {
+        if (x < 0.5)
+            return Math.log(Math.PI / Math.abs(Math.sin(Math.PI * x))) - logGamma(1 - x);
+        x -= 1;
+        double sum = 0.99999999999980993;
+        for (int i = 0; i < LANCZOS.length; i++)
+            sum += LANCZOS[i] / (x + i + 1);
+        double t = x + LANCZOS.length - 0.5;
+        return 0.5 * Math.log(2 * Math.PI) + (x + 0.5) * Math.log(t) - t + Math.log(sum);
+    }
+}
@@ -0,0 +1,222 @@
+import java.io.BufferedWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+/**
+ * Draws the Board on an ANSI terminal, sending only what changed since the previous frame.
+ * <p>
+ * The renderer keeps a model of the top of the screen (the board rows, a blank line and a status line): one
+ * character and one color per cell. Each frame is laid out into a second model, compared cell by cell with the
+ * first, and only the runs of changed cells are sent, each preceded by a cursor move. Everything goes through one
+ * buffered writer that is flushed once at the end of the frame, leaving the cursor on the line below the model
+ * with the rest of the screen cleared, ready for a prompt.
+ * <p>
+ * The first frame clears the screen. Anything else writing to the terminal must stay below the model.
+ */
+public class TerminalRenderer {
+    private static final char ESC = 27;
+    private static final int WIDTH = 256;           // widest line the model holds; longer lines are cut off
+    private static final int STATUS_LINE = 4;       // the line of the status message, below the 3 board rows
+    private static final int LINES = STATUS_LINE + 1;
+    private static final int PROMPT_LINE = LINES + 1;
+    private static final int MAX_GAP = 6;           // unchanged cells cheaper to resend than to jump over
+
+    private final PrintWriter out;
+
+    // what the terminal shows, and the frame being drawn
+    private char[][] shownChars = new char[LINES][WIDTH];
+    private byte[][] shownColors = new byte[LINES][WIDTH];  // SGR color code of each cell, 0 for the default
+    private int[] shownLength = new int[LINES];
+    private char[][] nextChars = new char[LINES][WIDTH];
+    private byte[][] nextColors = new byte[LINES][WIDTH];
+    private int[] nextLength = new int[LINES];
+
+    private boolean cleared;        // whether the screen was cleared, so that the model matches it
+    private int color;              // the SGR color the terminal is set to
+    private int cursorLine = -1;    // where the terminal's cursor is, -1 if unknown
+    private int cursorCol = -1;
+    private String status = "";
+
+    /**
+     * Constructor.
+     * @param stream the terminal's output, e.g. System.out
+     */
+    public TerminalRenderer(PrintStream stream) {
+        // the stream encodes the text itself, in its own charset, so box-drawing characters come out as it would print them
+        Writer encoder = new Writer() {
+            @Override
+            public void write(char[] chars, int offset, int length) {
+                stream.append(CharBuffer.wrap(chars, offset, length));
+            }
+
+            @Override
+            public void flush() {
+                stream.flush();
+            }
+
+            @Override
+            public void close() {
+                stream.close();
+            }
+        };
+        this.out = new PrintWriter(new BufferedWriter(encoder, 8192));
+    }
+
+    /**
+     * Sets the message shown under the board in the next frame only.
+     * @param status the message
+     */
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    /**
+     * Forces the next frame to clear the screen and redraw everything, e.g. after something else drew over it.
+     */
+    public void invalidate() {
+        cleared = false;
+    }
+
+    /**
+     * Draws a frame: brings the screen up to date with the Board and the status message, then leaves the cursor
+     * at the start of the cleared area below them.
+     * @param board the Board to draw
+     */
+    public void render(Board board) {
+        // lay the frame out as Board.toString() does
+        for (int row = 0; row < board.numRows(); row++) {
+            nextLength[row] = 0;
+            put(row, "┃┃   ");
+            for (int col = 0; col < board.numCols(); col++) {
+                put(row, board.getBoardSquare(row, col).getCard().toString());
+                put(row, "   ┃┃   ");
+            }
+        }
+        nextLength[STATUS_LINE - 1] = 0;
+        nextLength[STATUS_LINE] = 0;
+        put(STATUS_LINE, status);
+        status = "";
+
+        if (!cleared) {
+            out.print(ESC + "[0m" + ESC + "[H" + ESC + "[2J");
+            color = 0;
+            cursorLine = 0;
+            cursorCol = 0;
+            Arrays.fill(shownLength, 0);
+            cleared = true;
+        }
+
+        for (int line = 0; line < LINES; line++)
+            diff(line);
+
+        // back to the default color, and a clean area for the prompt
+        setColor(0);
+        out.print(ESC + "[" + (PROMPT_LINE + 1) + ";1H" + ESC + "[J");
+        cursorLine = -1;
+        out.flush();
+
+        // the next frame is drawn over this one
+        char[][] chars = shownChars;
+        shownChars = nextChars;
+        nextChars = chars;
+        byte[][] colors = shownColors;
+        shownColors = nextColors;
+        nextColors = colors;
+        int[] length = shownLength;
+        shownLength = nextLength;
+        nextLength = length;
+    }
+
+    /**
+     * Sends the changed cells of one line.
+     * @param line the line of the model
+     */
+    private void diff(int line) {
+        char[] chars = nextChars[line];
+        byte[] colors = nextColors[line];
+        int length = nextLength[line];
+
+        int col = 0;
+        while (col < length) {
+            if (isShown(line, col)) {
+                col++;
+                continue;
+            }
+
+            // extend the run over short stretches of unchanged cells, which cost less than another cursor move
+            int last = col;
+            for (int next = col + 1; next < length && next - last <= MAX_GAP; next++)
+                if (!isShown(line, next))
+                    last = next;
+
+            moveTo(line, col);
+            for (; col <= last; col++) {
+                setColor(colors[col]);
+                out.print(chars[col]);
+            }
+            cursorCol = col;
+        }
+
+        // erase whatever is left of a longer line
+        if (shownLength[line] > length) {
+            moveTo(line, length);
+            setColor(0);
+            out.print(ESC + "[K");
+        }
+    }
+
+    /**
+     * @return whether the terminal already shows the next frame's cell
+     */
+    private boolean isShown(int line, int col) {
+        return col < shownLength[line]
+                && shownChars[line][col] == nextChars[line][col]
+                && shownColors[line][col] == nextColors[line][col];
+    }
+
+    /**
+     * Appends text to a line of the next frame, turning its SGR color sequences into cell colors.
+     * The text starts in the default color, whatever color the previous text ended in.
+     * @param line the line of the model
+     * @param text the text, which may contain ESC[<n>m color sequences
+     */
+    private void put(int line, String text) {
+        char[] chars = nextChars[line];
+        byte[] colors = nextColors[line];
+        int length = nextLength[line];
+        byte sgr = 0;
+
+        for (int i = 0; i < text.length() && length < WIDTH; i++) {
+            char c = text.charAt(i);
+            if (c == ESC && i + 1 < text.length() && text.charAt(i + 1) == '[') {
+                int code = 0;
+                for (i += 2; i < text.length() && text.charAt(i) != 'm'; i++)
+                    code = code * 10 + text.charAt(i) - '0';
+                sgr = (byte) code;
+                continue;
+            }
+            chars[length] = c;
+            colors[length] = sgr;
+            length++;
+        }
+        nextLength[line] = length;
+    }
+
+    private void moveTo(int line, int col) {
+        if (line != cursorLine || col != cursorCol) {
+            out.print(ESC + "[" + (line + 1) + ";" + (col + 1) + "H");
+            cursorLine = line;
+            cursorCol = col;
+        }
+    }
+
+    private void setColor(int sgr) {
+        if (sgr != color) {
+            out.print(ESC + "[" + sgr + "m");
+            color = sgr;
+        }
+    }
+}
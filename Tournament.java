@@ -0,0 +1,247 @@
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Plays bot strategies against each other, every pair over the same seeded decks, spread across every core.
+ * <p>
+ * Two players alternate turns on one board. On its turn a player either takes a set, scoring one point, or asks
+ * for three more cards; a move that is not a set, or more cards when none can be added, passes the turn.
+ * The game ends once no set is left and no cards can be added, or when both players pass in a row, and the
+ * player with more points wins. Every deck is played twice, once with each player moving first.
+ * <p>
+ * Every game has its own Game, BoardView and random number generator, and each worker fills its own Match, so
+ * games share no mutable state and the tournament scales with the number of cores.
+ */
+public class Tournament {
+    private static final int DEALS_PER_TASK = 256;
+    private static final double CONFIDENCE = 0.95;
+
+    /**
+     * The results of one player against another.
+     * <p>
+     * The two games of a deck share its cards, so they are not independent, and a tie is worth half a win.
+     * The confidence interval is therefore taken over decks: each deck scores the player's points from both its
+     * games, from 0 to 1, and the interval is a Student t interval on the mean of those scores.
+     */
+    public static class Match {
+        private long wins;
+        private long ties;
+        private long losses;
+        private long decks;
+        private long halfPoints;            // over every deck, in half wins: a deck scores 0 to 4
+        private long halfPointsSquared;     // the sum of the squares of each deck's half wins
+
+        /**
+         * Records both games of one deck.
+         * @param margin the player's score minus the opponent's, with the player moving first
+         * @param swappedMargin the player's score minus the opponent's, with the opponent moving first
+         */
+        void recordDeck(int margin, int swappedMargin) {
+            int deckHalfPoints = record(margin) + record(swappedMargin);
+            decks++;
+            halfPoints += deckHalfPoints;
+            halfPointsSquared += deckHalfPoints * deckHalfPoints;
+        }
+
+        /**
+         * Records one game.
+         * @param margin the player's score minus the opponent's
+         * @return the player's points from the game, in half wins
+         */
+        private int record(int margin) {
+            if (margin > 0) {
+                wins++;
+                return 2;
+            }
+            if (margin < 0) {
+                losses++;
+                return 0;
+            }
+            ties++;
+            return 1;
+        }
+
+        /**
+         * Adds the results of another Match to this one.
+         * @param other the Match to add.
+         * @return this Match.
+         */
+        Match merge(Match other) {
+            wins              += other.wins;
+            ties              += other.ties;
+            losses            += other.losses;
+            decks             += other.decks;
+            halfPoints        += other.halfPoints;
+            halfPointsSquared += other.halfPointsSquared;
+            return this;
+        }
+
+        /**
+         * @return the number of games played.
+         */
+        public long getGames() {
+            return wins + ties + losses;
+        }
+
+        /**
+         * @return the number of games won.
+         */
+        public long getWins() {
+            return wins;
+        }
+
+        /**
+         * @return the number of games tied.
+         */
+        public long getTies() {
+            return ties;
+        }
+
+        /**
+         * @return the number of games lost.
+         */
+        public long getLosses() {
+            return losses;
+        }
+
+        /**
+         * @return the share of points won, a tie counting as half a win; the mean score per deck.
+         */
+        public double winRate() {
+            return halfPoints / (4.0 * decks);
+        }
+
+        /**
+         * @return the lower end of the 95% confidence interval of the mean score per deck.
+         */
+        public double lowerBound() {
+            return Math.max(0, winRate() - halfWidth());
+        }
+
+        /**
+         * @return the upper end of the 95% confidence interval of the mean score per deck.
+         */
+        public double upperBound() {
+            return Math.min(1, winRate() + halfWidth());
+        }
+
+        /**
+         * @return the half-width of the 95% t interval on the mean score per deck, or 1 with fewer than two decks.
+         */
+        private double halfWidth() {
+            if (decks < 2)
+                return 1;
+            double mean = winRate();
+            double variance = Math.max(0, (halfPointsSquared / 16.0 - decks * mean * mean) / (decks - 1));
+            return StudentT.quantile(1 - (1 - CONFIDENCE) / 2, decks - 1) * Math.sqrt(variance / decks);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%5.1f%% [%5.1f%%, %5.1f%%]  (%d won, %d tied, %d lost)",
+                    100 * winRate(), 100 * lowerBound(), 100 * upperBound(), wins, ties, losses);
+        }
+    }
+
+    /**
+     * Plays one player against another over a series of decks, in parallel on the common fork-join pool.
+     * @param player the player whose results are reported.
+     * @param opponent the other player.
+     * @param deals the number of decks; each is played twice, once with each player moving first.
+     * @param seed the seed of the first deck; deck d is dealt from seed + d, so every pair plays the same decks.
+     * @return the player's results against the opponent.
+     */
+    public static Match play(Player player, Player opponent, int deals, long seed) {
+        int tasks = (deals + DEALS_PER_TASK - 1) / DEALS_PER_TASK;
+
+        return IntStream.range(0, tasks)
+                .parallel()
+                .mapToObj(t -> {
+                    Match partial = new Match();
+                    int end = Math.min(deals, (t + 1) * DEALS_PER_TASK);
+                    for (int d = t * DEALS_PER_TASK; d < end; d++) {
+                        long deal = seed + d;
+                        partial.recordDeck(play(new Game(deal), player, opponent, new SplittableRandom(~deal)),
+                                -play(new Game(deal), opponent, player, new SplittableRandom(~deal)));
+                    }
+                    return partial;
+                })
+                .reduce(Match::merge)
+                .orElseGet(Match::new);
+    }
+
+    /**
+     * Plays one game between two players.
+     * @param game the Game to play, fresh from the deck.
+     * @param first the player moving first.
+     * @param second the player moving second.
+     * @param rng the random number generator of this game.
+     * @return the first player's score minus the second player's.
+     */
+    public static int play(Game game, Player first, Player second, SplittableRandom rng) {
+        BoardView view = new BoardView(game);
+        Player[] seats = {first, second};
+        int[] scores = new int[2];
+        int turn = 0;
+        int passes = 0;
+
+        while (passes < 2 && (game.hasSet() || view.canAdd3())) {
+            int[] move = seats[turn].move(view, rng);
+            if (move.length == 3 && isSet(view, move)) {
+                Board board = game.getBoard();
+                for (int slot : move) {
+                    BoardSquare bs = board.getBoardSquare(slot);
+                    game.addToSelected(bs.getRowPos(), bs.getColPos());
+                }
+                game.testSelected();
+                scores[turn]++;
+                passes = 0;
+            }
+            else if (move.length == 0 && view.canAdd3()) {
+                game.add3();
+                passes = 0;
+            }
+            else {
+                passes++;
+            }
+            turn ^= 1;
+        }
+
+        return scores[0] - scores[1];
+    }
+
+    /**
+     * @return whether a move names three different cards on the board that form a set.
+     */
+    private static boolean isSet(BoardView view, int[] move) {
+        for (int i = 0; i < 3; i++)
+            if (move[i] < 0 || move[i] >= view.numCards())
+                return false;
+        if (move[0] == move[1] || move[0] == move[2] || move[1] == move[2])
+            return false;
+        return Card.isSet(view.getCard(move[0]), view.getCard(move[1]), view.getCard(move[2]));
+    }
+
+    /**
+     * Runs a round-robin tournament between the built-in players from the command line.
+     * @param args [number of decks] [seed]
+     */
+    public static void main(String[] args) {
+        int deals = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 0;
+
+        String[] names = {"first-found", "most-follow-up", "random"};
+        Player[] players = {Player.FIRST_FOUND, Player.MOST_FOLLOW_UP, Player.RANDOM};
+
+        System.out.println(String.format("playing %d decks per pair on %d cores...",
+                deals, Runtime.getRuntime().availableProcessors()));
+        for (int a = 0; a < players.length; a++) {
+            for (int b = a + 1; b < players.length; b++) {
+                long start = System.nanoTime();
+                Match match = play(players[a], players[b], deals, seed);
+                System.out.println(String.format("%-14s vs %-14s %s  %.0f games/s", names[a], names[b], match,
+                        match.getGames() / ((System.nanoTime() - start) / 1e9)));
+            }
+        }
+    }
+}